@@ -0,0 +1,528 @@
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * Stores every ranked ballot of an instant runoff election in flat primitive arrays.
+ * Ballots with the same preference order are stored once, as a group with a weight equal to
+ * the number of voters who cast it. Each group is kept as the list of candidate indices in the
+ * order the voters ranked them, and each candidate keeps a list of the groups it currently holds.
+ * The preference orders are packed with as few bits per candidate as the election allows.
+ * BallotArena.java
+ */
+public class BallotArena extends BallotStore {
+  private static final int INITIAL_GROUPS = 1024;
+  private static final int[] EMPTY = new int[0];
+
+  // a loser holding at least this many groups has its groups moved by several threads
+  private static final int PARALLEL_THRESHOLD = 1 << 14;
+  private static final int CHUNK_SIZE = 1 << 12;
+
+  private final int numCandidates;
+  private int numBallots;
+  private int numGroups;
+  private int numLiveGroups;
+  private boolean compacted;
+
+  // preferences of group g are preferences.get(offsets[g]) to preferences.get(offsets[g + 1] - 1)
+  private PackedPreferences preferences;
+  private int[] offsets;
+  private int[] choice;
+  private int[] weight;
+  private int[] groupHash;
+
+  // open addressing table of group index + 1, 0 marks an empty slot, null once compacted
+  private int[] groupTable;
+
+  // groups held by candidate c are heldGroups[c][0] to heldGroups[c][heldSize[c] - 1]
+  private int[][] heldGroups;
+  private int[] heldSize;
+
+  // scratch space used to turn a ranked vote into a preference order
+  private final int[] rankOrder;
+
+  /**
+   * Constructor for BallotArena.
+   *
+   * @param numCandidates   number of candidates in the election
+   * @param expectedBallots number of ballots the election file says it contains
+   */
+  public BallotArena(int numCandidates, int expectedBallots) {
+    this.numCandidates = numCandidates;
+    int capacity = Math.max(Math.min(expectedBallots, INITIAL_GROUPS), 1);
+    this.preferences = new PackedPreferences(numCandidates,
+        capacity * Math.min(Math.max(numCandidates, 1), 4));
+    this.offsets = new int[capacity + 1];
+    this.choice = new int[capacity];
+    this.weight = new int[capacity];
+    this.groupHash = new int[capacity];
+    this.groupTable = new int[Integer.highestOneBit(capacity) * 4];
+    this.heldGroups = new int[numCandidates][];
+    this.heldSize = new int[numCandidates];
+    // most candidates of a large field never hold a ballot, so their lists stay empty
+    Arrays.fill(heldGroups, EMPTY);
+    this.rankOrder = new int[numCandidates];
+  }
+
+  /**
+   * Adds a ballot to the arena. If another voter already cast a ballot with the same
+   * preference order, the weight of that group goes up by one. Otherwise a new group
+   * is made and given to its first choice candidate.
+   * The preference order stops at the first rank that no candidate was given.
+   *
+   * @param rankedVote rank given to each candidate, 0 if the candidate was not ranked
+   * @return the index of the group the ballot was added to
+   * @throws IllegalStateException if the arena has been compacted
+   */
+  @Override
+  public int addBallot(int[] rankedVote) {
+    if (compacted) {
+      throw new IllegalStateException("Ballots cannot be added after the arena is compacted");
+    }
+    Arrays.fill(rankOrder, -1);
+    for (int i = 0; i < numCandidates; i++) {
+      int rank = rankedVote[i];
+      // when two candidates share a rank, the first one listed takes it; ranks out of range
+      // are left out of the order
+      if (rank > 0 && rank <= numCandidates && rankOrder[rank - 1] == -1) {
+        rankOrder[rank - 1] = i;
+      }
+    }
+    int length = 0;
+    while (length < numCandidates && rankOrder[length] != -1) {
+      length++;
+    }
+    return addOrder(length, 1);
+  }
+
+  /**
+   * Adds a group of ballots that all have the same preference order to the arena. If the
+   * arena already has a group with that order, its weight goes up by the weight of the ballots.
+   *
+   * @param order     array holding the preference order, as candidate indices
+   * @param start     position in the array of the first choice
+   * @param length number of candidates in the preference order
+   * @param weight number of ballots in the group
+   * @return the index of the group the ballots were added to
+   * @throws IllegalStateException if the arena has been compacted
+   */
+  @Override
+  public int addGroup(int[] order, int start, int length, int weight) {
+    if (compacted) {
+      throw new IllegalStateException("Ballots cannot be added after the arena is compacted");
+    }
+    System.arraycopy(order, start, rankOrder, 0, length);
+    return addOrder(length, weight);
+  }
+
+  /**
+   * Adds ballots with the preference order held in the scratch space to the arena.
+   *
+   * @param length number of preferences in the scratch space
+   * @param count  number of ballots to add
+   * @return the index of the group the ballots were added to
+   */
+  private int addOrder(int length, int count) {
+    int hash = 0;
+    for (int i = 0; i < length; i++) {
+      hash = hash * 31 + rankOrder[i];
+    }
+    hash ^= hash >>> 16;
+    numBallots += count;
+
+    // look for a group with the same preference order
+    int mask = groupTable.length - 1;
+    int slot = hash & mask;
+    while (groupTable[slot] != 0) {
+      int group = groupTable[slot] - 1;
+      if (groupHash[group] == hash && sameGroup(group, length)) {
+        weight[group] += count;
+        return group;
+      }
+      slot = (slot + 1) & mask;
+    }
+
+    int group = numGroups;
+    ensureGroupCapacity(group + 1);
+    int start = offsets[group];
+    preferences.ensureCapacity(start + length);
+    for (int i = 0; i < length; i++) {
+      preferences.set(start + i, rankOrder[i]);
+    }
+    offsets[group + 1] = start + length;
+    weight[group] = count;
+    groupHash[group] = hash;
+    numGroups++;
+    groupTable[slot] = group + 1;
+    if (numGroups * 2 > groupTable.length) {
+      growGroupTable();
+    }
+
+    if (length > 0) {
+      hold(preferences.get(start), group);
+      numLiveGroups++;
+    }
+    return group;
+  }
+
+  /**
+   * Adds every group of this arena to another ballot store, in the order the groups were made.
+   * This is used to merge arenas that were filled from different parts of an election file.
+   *
+   * @param store the store to add the groups to
+   */
+  public void addTo(BallotStore store) {
+    int[] order = new int[numCandidates];
+    for (int group = 0; group < numGroups; group++) {
+      int start = offsets[group];
+      int length = offsets[group + 1] - start;
+      for (int i = 0; i < length; i++) {
+        order[i] = preferences.get(start + i);
+      }
+      store.addGroup(order, 0, length, weight[group]);
+    }
+  }
+
+  /**
+   * Checks if a group has the preference order currently held in the scratch space.
+   *
+   * @param group  index of the group
+   * @param length number of preferences in the scratch space
+   * @return true if the group has the same preferences
+   */
+  private boolean sameGroup(int group, int length) {
+    int start = offsets[group];
+    if (offsets[group + 1] - start != length) {
+      return false;
+    }
+    for (int i = 0; i < length; i++) {
+      if (preferences.get(start + i) != rankOrder[i]) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  /**
+   * Moves a group on to the next candidate in its preference order that has not been
+   * eliminated. The choice cursor only ever moves forward, so each preference is looked at
+   * no more than once over the whole election.
+   *
+   * @param group      index of the group
+   * @param eliminated set of the indices of the eliminated candidates
+   * @return index of the candidate that should receive the group, -1 if there is none
+   */
+  public int nextChoice(int group, BitSet eliminated) {
+    int position = offsets[group] + choice[group] + 1;
+    int end = offsets[group + 1];
+    while (position < end && eliminated.get(preferences.get(position))) {
+      position++;
+    }
+    choice[group] = position - offsets[group];
+    return position < end ? preferences.get(position) : -1;
+  }
+
+  /**
+   * Gets the candidate the group is currently counted for.
+   *
+   * @param group index of the group
+   * @return index of the candidate, -1 if the group has no choices left
+   */
+  public int currentChoice(int group) {
+    int position = offsets[group] + choice[group];
+    if (position >= offsets[group + 1]) {
+      return -1;
+    }
+    return preferences.get(position);
+  }
+
+  /**
+   * Gets the number of ballots in a group.
+   *
+   * @param group index of the group
+   * @return number of voters who cast this preference order
+   */
+  public int getWeight(int group) {
+    return weight[group];
+  }
+
+  /**
+   * Gives a group to a candidate.
+   *
+   * @param candidate index of the candidate
+   * @param group     index of the group
+   */
+  public void hold(int candidate, int group) {
+    int size = heldSize[candidate];
+    if (size == heldGroups[candidate].length) {
+      heldGroups[candidate] = Arrays.copyOf(heldGroups[candidate], Math.max(size * 2, 4));
+    }
+    heldGroups[candidate][size] = group;
+    heldSize[candidate] = size + 1;
+  }
+
+  /**
+   * Gets the number of groups held by a candidate.
+   *
+   * @param candidate index of the candidate
+   * @return number of groups the candidate holds
+   */
+  public int getNumHeld(int candidate) {
+    return heldSize[candidate];
+  }
+
+  /**
+   * Gets one of the groups held by a candidate.
+   *
+   * @param candidate index of the candidate
+   * @param i         position of the group in the candidate's list
+   * @return index of the group
+   */
+  public int getHeld(int candidate, int i) {
+    return heldGroups[candidate][i];
+  }
+
+  /**
+   * Gets the number of ballots in all the groups held by a candidate.
+   *
+   * @param candidate index of the candidate
+   * @return number of ballots the candidate holds
+   */
+  @Override
+  public int countHeldBallots(int candidate) {
+    int count = 0;
+    for (int i = 0; i < heldSize[candidate]; i++) {
+      count += weight[heldGroups[candidate][i]];
+    }
+    return count;
+  }
+
+  /**
+   * Moves every group held by an eliminated candidate to its next choice that has not been
+   * eliminated. Ballots with the same preference order are moved together as one group.
+   * When the loser holds many groups, they are split into chunks that find their next choices
+   * on a ForkJoin pool. Each chunk keeps its own totals and destinations, and the chunks are
+   * merged in order, so the result is exactly the same as moving the groups one by one.
+   * The loser's list of groups is released afterwards, since an eliminated candidate never
+   * holds ballots again.
+   *
+   * @param loser      index of the eliminated candidate
+   * @param eliminated set of the indices of the eliminated candidates, including the loser
+   * @param received   filled with the number of ballots each candidate received
+   * @return number of ballots that had no next choice and were deleted
+   */
+  @Override
+  public int transferBallots(int loser, BitSet eliminated, int[] received) {
+    int size = heldSize[loser];
+    ArrayList<TransferChunk> chunks = new ArrayList<>();
+    if (size < PARALLEL_THRESHOLD) {
+      TransferChunk chunk = new TransferChunk(loser, 0, size, eliminated);
+      chunk.compute();
+      chunks.add(chunk);
+    } else {
+      for (int start = 0; start < size; start += CHUNK_SIZE) {
+        chunks.add(new TransferChunk(loser, start, Math.min(start + CHUNK_SIZE, size), eliminated));
+      }
+      ForkJoinTask.invokeAll(chunks);
+    }
+
+    // merge the chunks in order, so every candidate's list of groups matches a sequential run
+    int exhausted = 0;
+    int[] held = heldGroups[loser];
+    for (TransferChunk chunk : chunks) {
+      exhausted += chunk.exhausted;
+      for (int c = 0; c < numCandidates; c++) {
+        received[c] += chunk.received[c];
+      }
+      for (int i = chunk.start; i < chunk.end; i++) {
+        int next = chunk.next[i - chunk.start];
+        if (next != -1) {
+          hold(next, held[i]);
+        } else {
+          numLiveGroups--;
+        }
+      }
+    }
+    heldGroups[loser] = EMPTY;
+    heldSize[loser] = 0;
+    return exhausted;
+  }
+
+  /**
+   * Finds the next choice for one chunk of the groups held by an eliminated candidate.
+   * Each group is only looked at by one chunk, and nothing shared is changed apart from
+   * the choice cursors of the chunk's own groups.
+   */
+  @SuppressWarnings("serial")
+  private final class TransferChunk extends RecursiveAction {
+    private final int loser;
+    private final int start;
+    private final int end;
+    private final BitSet eliminated;
+    private final int[] next;
+    private final int[] received;
+    private int exhausted;
+
+    /**
+     * Constructor for TransferChunk.
+     *
+     * @param loser      index of the eliminated candidate
+     * @param start      position of the first group of the chunk in the loser's list
+     * @param end        position after the last group of the chunk in the loser's list
+     * @param eliminated set of the indices of the eliminated candidates, including the loser
+     */
+    TransferChunk(int loser, int start, int end, BitSet eliminated) {
+      this.loser = loser;
+      this.start = start;
+      this.end = end;
+      this.eliminated = eliminated;
+      this.next = new int[end - start];
+      this.received = new int[numCandidates];
+    }
+
+    /**
+     * Finds the next choice of each group in the chunk and counts the ballots each
+     * candidate receives.
+     */
+    @Override
+    protected void compute() {
+      int[] held = heldGroups[loser];
+      for (int i = start; i < end; i++) {
+        int group = held[i];
+        int candidate = nextChoice(group, eliminated);
+        next[i - start] = candidate;
+        if (candidate == -1) {
+          exhausted += weight[group];
+        } else {
+          received[candidate] += weight[group];
+        }
+      }
+    }
+  }
+
+  /**
+   * Gets the number of ballots stored in the arena.
+   *
+   * @return number of ballots
+   */
+  @Override
+  public int getNumBallots() {
+    return numBallots;
+  }
+
+  /**
+   * Gets the number of distinct preference orders stored in the arena.
+   *
+   * @return number of groups
+   */
+  public int getNumGroups() {
+    return numGroups;
+  }
+
+  /**
+   * Gets the number of groups still held by a candidate.
+   *
+   * @return number of live groups
+   */
+  public int getNumLiveGroups() {
+    return numLiveGroups;
+  }
+
+  /**
+   * Rebuilds the arena with only the groups still held by a candidate, once at least half of
+   * the groups have been used up. Only the preferences from each group's current choice onward
+   * are kept, since the cursor never moves back. The table used to find identical ballots is
+   * dropped as well, so no ballots can be added afterwards.
+   */
+  @Override
+  public void compact() {
+    if (numLiveGroups * 2 > numGroups) {
+      return;
+    }
+    int capacity = Math.max(numLiveGroups, 1);
+    int length = 0;
+    for (int c = 0; c < numCandidates; c++) {
+      for (int i = 0; i < heldSize[c]; i++) {
+        int group = heldGroups[c][i];
+        length += offsets[group + 1] - offsets[group] - choice[group];
+      }
+    }
+    PackedPreferences newPreferences = new PackedPreferences(numCandidates, Math.max(length, 1));
+    int[] newOffsets = new int[capacity + 1];
+    int[] newWeight = new int[capacity];
+    int newGroup = 0;
+    for (int c = 0; c < numCandidates; c++) {
+      int[] held = heldGroups[c];
+      for (int i = 0; i < heldSize[c]; i++) {
+        int group = held[i];
+        int start = offsets[group] + choice[group];
+        int remaining = offsets[group + 1] - start;
+        for (int j = 0; j < remaining; j++) {
+          newPreferences.set(newOffsets[newGroup] + j, preferences.get(start + j));
+        }
+        newOffsets[newGroup + 1] = newOffsets[newGroup] + remaining;
+        newWeight[newGroup] = weight[group];
+        held[i] = newGroup++;
+      }
+      heldGroups[c] = Arrays.copyOf(held, heldSize[c]);
+    }
+    preferences = newPreferences;
+    offsets = newOffsets;
+    choice = new int[capacity];
+    weight = newWeight;
+    groupHash = null;
+    groupTable = null;
+    numGroups = newGroup;
+    compacted = true;
+  }
+
+  /**
+   * Gets the approximate number of bytes used by the arrays of the arena.
+   *
+   * @return number of bytes
+   */
+  @Override
+  public long getStorageBytes() {
+    long ints = (long) offsets.length + choice.length + weight.length;
+    if (!compacted) {
+      ints += groupHash.length + groupTable.length;
+    }
+    for (int c = 0; c < numCandidates; c++) {
+      ints += heldGroups[c].length;
+    }
+    return ints * Integer.BYTES + preferences.getStorageBytes();
+  }
+
+  /**
+   * Grows the per-group arrays so that they fit the given number of groups.
+   *
+   * @param capacity number of groups that must fit
+   */
+  private void ensureGroupCapacity(int capacity) {
+    if (capacity <= choice.length) {
+      return;
+    }
+    int newCapacity = Math.max(choice.length * 2, capacity);
+    offsets = Arrays.copyOf(offsets, newCapacity + 1);
+    choice = Arrays.copyOf(choice, newCapacity);
+    weight = Arrays.copyOf(weight, newCapacity);
+    groupHash = Arrays.copyOf(groupHash, newCapacity);
+  }
+
+  /**
+   * Doubles the size of the group table and puts every group back into it.
+   */
+  private void growGroupTable() {
+    groupTable = new int[groupTable.length * 2];
+    int mask = groupTable.length - 1;
+    for (int group = 0; group < numGroups; group++) {
+      int slot = groupHash[group] & mask;
+      while (groupTable[slot] != 0) {
+        slot = (slot + 1) & mask;
+      }
+      groupTable[slot] = group + 1;
+    }
+  }
+}
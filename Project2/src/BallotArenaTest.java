@@ -0,0 +1,223 @@
+import java.util.BitSet;
+import java.util.Random;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+/**
+ * Tests the methods for the BallotArena class.
+ * BallotArenaTest.java
+ */
+public class BallotArenaTest {
+  private BallotArena arena;
+
+  /**
+   * Set up a ballot arena with four candidates for testing.
+   */
+  @BeforeEach
+  public void setUp() {
+    arena = new BallotArena(4, 2);
+    arena.addBallot(new int[]{1, 3, 4, 2});
+    arena.addBallot(new int[]{1, 0, 2, 0});
+    arena.addBallot(new int[]{0, 0, 1, 2});
+  }
+
+  @Test
+  public void testAddBallot() {
+    assertEquals(3, arena.getNumBallots());
+    assertEquals(2, arena.getNumHeld(0));
+    assertEquals(0, arena.getNumHeld(1));
+    assertEquals(1, arena.getNumHeld(2));
+    assertEquals(0, arena.getHeld(0, 0));
+    assertEquals(1, arena.getHeld(0, 1));
+    assertEquals(2, arena.getHeld(2, 0));
+  }
+
+  @Test
+  public void testAddBallotGroupsSameOrder() {
+    assertEquals(0, arena.addBallot(new int[]{1, 3, 4, 2}));
+    assertEquals(1, arena.addBallot(new int[]{1, 0, 2, 0}));
+    // the rank past the end is left out of the order, so the ballot joins the same group
+    assertEquals(1, arena.addBallot(new int[]{1, 0, 2, 5}));
+    assertEquals(6, arena.getNumBallots());
+    assertEquals(3, arena.getNumGroups());
+    assertEquals(2, arena.getWeight(0));
+    assertEquals(3, arena.getWeight(1));
+    assertEquals(1, arena.getWeight(2));
+    assertEquals(2, arena.getNumHeld(0));
+    assertEquals(5, arena.countHeldBallots(0));
+  }
+
+  @Test
+  public void testAddBallotRankOutOfRange() {
+    // the negative rank is left out of the order like a rank past the end is
+    int group = arena.addBallot(new int[]{1, -1, 0, 2});
+    assertEquals(0, arena.currentChoice(group));
+    assertEquals(group, arena.addBallot(new int[]{1, 5, 0, 2}));
+  }
+
+  @Test
+  public void testAddMarks() {
+    assertEquals(0, arena.addMarks(new int[]{0, 1, 2, 3}, new int[]{1, 3, 4, 2}, 4));
+    assertEquals(2, arena.addMarks(new int[]{2, 3}, new int[]{1, 2}, 2));
+    // the rank of 5 does not follow on from 2, so the order stops after two candidates
+    assertEquals(1, arena.addMarks(new int[]{0, 2, 3}, new int[]{1, 2, 5}, 3));
+    assertEquals(1, arena.addBallot(new int[]{1, 0, 2, 5}));
+    assertEquals(7, arena.getNumBallots());
+  }
+
+  @Test
+  public void testAddMarksSameAsAddBallot() {
+    // ballots with shared ranks, gaps and ranks past the number of candidates
+    Random random = new Random(18);
+    BallotArena dense = new BallotArena(6, 500);
+    BallotArena sparse = new BallotArena(6, 500);
+    int[] candidates = new int[6];
+    int[] ranks = new int[6];
+    for (int b = 0; b < 500; b++) {
+      int[] rankedVote = new int[6];
+      int numMarked = 0;
+      for (int i = 0; i < 6; i++) {
+        if (random.nextInt(3) > 0) {
+          rankedVote[i] = 1 + random.nextInt(7);
+          candidates[numMarked] = i;
+          ranks[numMarked++] = rankedVote[i];
+        }
+      }
+      assertEquals(dense.addBallot(rankedVote), sparse.addMarks(candidates, ranks, numMarked));
+    }
+    assertEquals(dense.getNumGroups(), sparse.getNumGroups());
+    for (int c = 0; c < 6; c++) {
+      assertEquals(dense.countHeldBallots(c), sparse.countHeldBallots(c));
+    }
+  }
+
+  @Test
+  public void testNextChoice() {
+    BitSet eliminated = new BitSet();
+    assertEquals(0, arena.currentChoice(0));
+    assertEquals(3, arena.nextChoice(0, eliminated));
+    assertEquals(1, arena.nextChoice(0, eliminated));
+    assertEquals(2, arena.nextChoice(0, eliminated));
+    assertEquals(-1, arena.nextChoice(0, eliminated));
+  }
+
+  @Test
+  public void testNextChoiceSkipsEliminated() {
+    BitSet eliminated = new BitSet();
+    eliminated.set(0);
+    eliminated.set(3);
+    assertEquals(1, arena.nextChoice(0, eliminated));
+    assertEquals(1, arena.currentChoice(0));
+    eliminated.set(2);
+    assertEquals(-1, arena.nextChoice(0, eliminated));
+  }
+
+  @Test
+  public void testNextChoiceStopsAtMissingRank() {
+    arena.addBallot(new int[]{1, 0, 3, 0});
+    assertEquals(0, arena.currentChoice(3));
+    assertEquals(-1, arena.nextChoice(3, new BitSet()));
+  }
+
+  @Test
+  public void testHold() {
+    arena.hold(1, 2);
+    assertEquals(1, arena.getNumHeld(1));
+    assertEquals(2, arena.getHeld(1, 0));
+  }
+
+  @Test
+  public void testTransferBallots() {
+    arena.addBallot(new int[]{2, 0, 1, 0});
+    BitSet eliminated = new BitSet();
+    eliminated.set(2);
+    int[] received = new int[4];
+    assertEquals(0, arena.transferBallots(2, eliminated, received));
+    assertEquals(1, received[0]);
+    assertEquals(1, received[3]);
+    assertEquals(3, arena.countHeldBallots(0));
+    eliminated.set(0);
+    received = new int[4];
+    assertEquals(2, arena.transferBallots(0, eliminated, received));
+    assertEquals(1, received[3]);
+  }
+
+  @Test
+  public void testTransferBallotsReleasesLoser() {
+    BitSet eliminated = new BitSet();
+    eliminated.set(0);
+    arena.transferBallots(0, eliminated, new int[4]);
+    assertEquals(0, arena.getNumHeld(0));
+    assertEquals(0, arena.countHeldBallots(0));
+  }
+
+  @Test
+  public void testCompact() {
+    BitSet eliminated = new BitSet();
+    for (int loser : new int[]{0, 2, 3}) {
+      eliminated.set(loser);
+      arena.transferBallots(loser, eliminated, new int[4]);
+      arena.compact();
+    }
+    // only the first ballot is left, held by Kleinberg
+    assertEquals(1, arena.getNumLiveGroups());
+    assertEquals(1, arena.getNumGroups());
+    assertEquals(1, arena.countHeldBallots(1));
+    assertEquals(1, arena.currentChoice(arena.getHeld(1, 0)));
+    assertEquals(-1, arena.nextChoice(arena.getHeld(1, 0), eliminated));
+    assertThrows(IllegalStateException.class, () -> arena.addBallot(new int[]{1, 2, 3, 4}));
+  }
+
+  @Test
+  public void testCompactKeepsMostlyLiveArena() {
+    long bytes = arena.getStorageBytes();
+    arena.compact();
+    assertEquals(3, arena.getNumGroups());
+    assertEquals(bytes, arena.getStorageBytes());
+  }
+
+  @Test
+  public void testTransferBallotsManyGroups() {
+    // enough distinct preference orders held by one candidate to move them in parallel
+    Random rand = new Random(8);
+    int numCandidates = 9;
+    BallotArena big = new BallotArena(numCandidates, 60000);
+    PreferenceTrie trie = new PreferenceTrie(numCandidates, 60000);
+    for (int b = 0; b < 60000; b++) {
+      int[] rankedVote = new int[numCandidates];
+      int numRanked = 1 + rand.nextInt(numCandidates);
+      int[] order = new int[numCandidates];
+      for (int i = 0; i < numCandidates; i++) {
+        order[i] = i;
+      }
+      for (int i = numCandidates - 1; i > 1; i--) {
+        int j = 1 + rand.nextInt(i);
+        int swap = order[i];
+        order[i] = order[j];
+        order[j] = swap;
+      }
+      for (int rank = 1; rank <= numRanked; rank++) {
+        rankedVote[order[rank - 1]] = rank;
+      }
+      big.addBallot(rankedVote);
+      trie.addBallot(rankedVote);
+    }
+    assertEquals(60000, big.countHeldBallots(0));
+
+    BitSet eliminated = new BitSet();
+    for (int loser = 0; loser < numCandidates - 1; loser++) {
+      eliminated.set(loser);
+      int[] arenaReceived = new int[numCandidates];
+      int[] trieReceived = new int[numCandidates];
+      assertEquals(trie.transferBallots(loser, eliminated, trieReceived),
+          big.transferBallots(loser, eliminated, arenaReceived));
+      assertArrayEquals(trieReceived, arenaReceived);
+    }
+    assertEquals(trie.countHeldBallots(numCandidates - 1),
+        big.countHeldBallots(numCandidates - 1));
+  }
+}
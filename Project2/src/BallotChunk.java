@@ -0,0 +1,88 @@
+import java.io.IOException;
+import java.nio.ByteBuffer;
+
+/**
+ * Counts the ballots of one part of an election file. When a file is read on several threads,
+ * each part is counted into its own chunk, and the chunks are merged in file order once every
+ * part has been read, so the result never depends on how the threads were scheduled.
+ * BallotChunk.java
+ */
+public abstract class BallotChunk implements BallotHandler {
+  // unused slots on each side keep the tallies of different threads off the same cache line
+  private static final int PADDING = 16;
+
+  private final int[] tally;
+
+  /**
+   * Constructor for BallotChunk.
+   *
+   * @param tallySize number of counters in the tally, usually the number of candidates
+   */
+  public BallotChunk(int tallySize) {
+    this.tally = new int[tallySize + 2 * PADDING];
+  }
+
+  /**
+   * Adds one to a counter of the tally.
+   *
+   * @param index index of the counter
+   */
+  protected void addToTally(int index) {
+    tally[PADDING + index]++;
+  }
+
+  /**
+   * Gets a counter of the tally.
+   *
+   * @param index index of the counter
+   * @return number of times the counter was added to
+   */
+  public int getTally(int index) {
+    return tally[PADDING + index];
+  }
+
+  /**
+   * Finds the candidate marked on a single-choice ballot. When a ballot has more than one
+   * mark, the last one counts, so every election type reads such ballots the same way.
+   *
+   * @param vote value of each field of the ballot, 1 for the candidate voted for
+   * @return index of the marked candidate, or -1 if the ballot has no mark
+   */
+  protected static int findMark(int[] vote) {
+    for (int i = vote.length - 1; i >= 0; i--) {
+      if (vote[i] == 1) {
+        return i;
+      }
+    }
+    return -1;
+  }
+
+  /**
+   * Counts ballot lines held in a buffer of bytes, each one ending with a newline except
+   * perhaps the last. The lines are parsed with a tokenizer of their own, so chunks of the
+   * same file can be counted on different threads.
+   *
+   * @param bytes        buffer holding the lines from position 0 to its limit
+   * @param firstOrdinal ordinal of the first ballot in the buffer
+   * @param numLines     number of ballot lines in the buffer
+   * @param numFields    number of fields of a ballot
+   * @throws IOException if a field is not a number
+   */
+  public void countLines(ByteBuffer bytes, int firstOrdinal, int numLines, int numFields)
+      throws IOException {
+    BallotTokenizer tokenizer = new BallotTokenizer();
+    int[] fields = new int[numFields];
+    int limit = bytes.limit();
+    int lineStart = 0;
+    for (int i = 0; i < numLines; i++) {
+      int lineEnd = lineStart;
+      while (lineEnd < limit && bytes.get(lineEnd) != '\n') {
+        lineEnd++;
+      }
+      tokenizer.reset(bytes, lineStart, lineEnd);
+      tokenizer.readFields(fields, firstOrdinal + i);
+      countBallot(firstOrdinal + i, fields);
+      lineStart = lineEnd + 1;
+    }
+  }
+}
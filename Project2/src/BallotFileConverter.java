@@ -0,0 +1,225 @@
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Converts an IR, party list or PO election file from the text format to the binary ballot format
+ * read by BinaryBallotReader. Run it with the text file and the binary file to write:
+ * java BallotFileConverter election.csv election.vsb
+ * BallotFileConverter.java
+ */
+public class BallotFileConverter {
+  /**
+   * Main method that converts one election file.
+   *
+   * @param args the text election file and the binary file to write
+   */
+  public static void main(String[] args) {
+    if (args.length != 2) {
+      System.out.println("Usage: java BallotFileConverter <election file> <binary file>");
+      return;
+    }
+    try {
+      int numBallots = convert(new File(args[0]), new File(args[1]));
+      System.out.printf("Converted %d ballots to %s%n", numBallots, args[1]);
+    } catch (IOException e) {
+      e.printStackTrace();
+    }
+  }
+
+  /**
+   * Converts an election file from the text format to the binary ballot format.
+   *
+   * @param textFile   the election file in the text format, which may be gzip compressed
+   * @param binaryFile the file to write in the binary ballot format
+   * @return number of ballots written
+   * @throws IOException if the election file cannot be read or is not formatted properly
+   */
+  public static int convert(File textFile, File binaryFile) throws IOException {
+    try (BallotReader reader = BallotReader.open(textFile);
+         OutputStream out = new BufferedOutputStream(new FileOutputStream(binaryFile), 1 << 16)) {
+      return convert(reader, out);
+    }
+  }
+
+  /**
+   * Converts an election read from a BallotReader to the binary ballot format.
+   *
+   * @param reader reader of the election file, starting at the type of election
+   * @param out    stream the binary election file is written to
+   * @return number of ballots written
+   * @throws IOException if the election file cannot be read or is not formatted properly
+   */
+  public static int convert(BallotReader reader, OutputStream out) throws IOException {
+    String type = reader.readLine();
+    if (!"IR".equals(type) && !"PO".equals(type) && !OpenPartyList.isPartyList(type)) {
+      throw new IOException("Unknown type of election: " + type);
+    }
+    reader.readLine();
+    List<String> names = new ArrayList<>();
+    List<String> candidateParties = new ArrayList<>();
+    parseCandidates(type, reader.readLine(), names, candidateParties);
+    int numSeats = OpenPartyList.isPartyList(type) ? parseCount(reader.readLine()) : 0;
+    int numBallots = parseCount(reader.readLine());
+
+    // parties are numbered in the order they first appear
+    Map<String, Integer> partyNumbers = new HashMap<>();
+    List<String> parties = new ArrayList<>();
+    for (String party : candidateParties) {
+      if (!partyNumbers.containsKey(party)) {
+        partyNumbers.put(party, parties.size());
+        parties.add(party);
+      }
+    }
+
+    out.write(BinaryBallotReader.MAGIC);
+    writeString(out, type);
+    writeVarint(out, parties.size());
+    for (String party : parties) {
+      writeString(out, party);
+    }
+    writeVarint(out, names.size());
+    for (int i = 0; i < names.size(); i++) {
+      writeString(out, names.get(i));
+      writeVarint(out, partyNumbers.get(candidateParties.get(i)));
+    }
+    writeVarint(out, numSeats);
+    writeVarint(out, numBallots);
+
+    // every ballot line is written, so the elections stop reading where they would in the text
+    try {
+      return reader.readBallots(Integer.MAX_VALUE, names.size(), (ordinal, fields) -> {
+        try {
+          writeBallot(out, fields);
+        } catch (IOException e) {
+          throw new UncheckedIOException(e);
+        }
+      });
+    } catch (UncheckedIOException e) {
+      throw e.getCause();
+    }
+  }
+
+  /**
+   * Splits the candidate line of the header into the names and parties of the candidates.
+   * IR files write each candidate as Name (Party); party list and PO files write [Name,Party].
+   *
+   * @param type    type of election
+   * @param line    candidate line of the header
+   * @param names   filled with the name of each candidate
+   * @param parties filled with the party of each candidate
+   * @throws IOException if a candidate has no party
+   */
+  private static void parseCandidates(String type, String line, List<String> names,
+      List<String> parties) throws IOException {
+    if (line == null) {
+      throw new IOException("Election file has no candidates line");
+    }
+    BallotTokenizer tokenizer = new BallotTokenizer();
+    tokenizer.reset(line);
+    while (tokenizer.nextField()) {
+      if (!"IR".equals(type)) {
+        String name = tokenizer.fieldString();
+        if (!tokenizer.nextField()) {
+          throw new IOException("Candidate " + name + " has no party");
+        }
+        names.add(name);
+        parties.add(tokenizer.fieldString());
+        continue;
+      }
+      if (tokenizer.isFieldEmpty()) {
+        continue;
+      }
+      int open = tokenizer.lastIndexInField('(');
+      if (open == -1) {
+        throw new IOException("Candidate " + tokenizer.fieldString() + " has no party");
+      }
+      int nameEnd = open > tokenizer.getFieldStart() && tokenizer.charAt(open - 1) == ' '
+          ? open - 1 : open;
+      int partyEnd = tokenizer.charAt(tokenizer.getFieldEnd() - 1) == ')'
+          ? tokenizer.getFieldEnd() - 1 : tokenizer.getFieldEnd();
+      names.add(tokenizer.substring(tokenizer.getFieldStart(), nameEnd));
+      parties.add(tokenizer.substring(open + 1, partyEnd));
+    }
+  }
+
+  /**
+   * Reads a count from a line of the header.
+   *
+   * @param line the line
+   * @return the count
+   * @throws IOException if the line is missing or is not a number
+   */
+  private static int parseCount(String line) throws IOException {
+    if (line == null) {
+      throw new IOException("Election file ends in the header");
+    }
+    try {
+      return Integer.parseInt(line.trim());
+    } catch (NumberFormatException e) {
+      throw new IOException("Header line " + line + " is not a number", e);
+    }
+  }
+
+  /**
+   * Writes a ballot as the number of marked candidates, then the gap from the previous marked
+   * candidate and the mark of each one.
+   *
+   * @param out    stream to write to
+   * @param fields value of each field of the ballot, 0 where the candidate is not marked
+   * @throws IOException if the stream cannot be written
+   */
+  static void writeBallot(OutputStream out, int[] fields) throws IOException {
+    int numMarked = 0;
+    for (int field : fields) {
+      if (field != 0) {
+        numMarked++;
+      }
+    }
+    writeVarint(out, numMarked);
+    int previous = -1;
+    for (int i = 0; i < fields.length; i++) {
+      if (fields[i] != 0) {
+        writeVarint(out, i - previous - 1);
+        writeVarint(out, fields[i]);
+        previous = i;
+      }
+    }
+  }
+
+  /**
+   * Writes an unsigned varint, seven bits per byte with the lowest bits first.
+   *
+   * @param out   stream to write to
+   * @param value the number, treated as unsigned
+   * @throws IOException if the stream cannot be written
+   */
+  static void writeVarint(OutputStream out, int value) throws IOException {
+    while ((value & ~0x7f) != 0) {
+      out.write((value & 0x7f) | 0x80);
+      value >>>= 7;
+    }
+    out.write(value);
+  }
+
+  /**
+   * Writes a string as its length followed by its UTF-8 bytes.
+   *
+   * @param out   stream to write to
+   * @param value the string
+   * @throws IOException if the stream cannot be written
+   */
+  private static void writeString(OutputStream out, String value) throws IOException {
+    byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+    writeVarint(out, bytes.length);
+    out.write(bytes);
+  }
+}
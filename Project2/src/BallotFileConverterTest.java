@@ -0,0 +1,101 @@
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+/**
+ * Tests the methods for the BallotFileConverter class.
+ * BallotFileConverterTest.java
+ */
+public class BallotFileConverterTest {
+  private File textFile;
+  private File binaryFile;
+
+  /**
+   * Create the files for testing.
+   *
+   * @throws IOException if the files cannot be created
+   */
+  @BeforeEach
+  public void setUp() throws IOException {
+    textFile = File.createTempFile("election", ".csv");
+    binaryFile = File.createTempFile("election", ".vsb");
+  }
+
+  @AfterEach
+  public void tearDown() {
+    textFile.delete();
+    binaryFile.delete();
+  }
+
+  /**
+   * Converts the text file and checks that the binary file reads the same as the text file.
+   *
+   * @param contents   contents of the text file
+   * @param numHeader  number of header lines, including the type of election
+   * @param numFields  number of fields of a ballot
+   * @param numBallots number of ballots in the text file
+   * @throws IOException if a file cannot be read or written
+   */
+  private void assertConvertsSame(String contents, int numHeader, int numFields, int numBallots)
+      throws IOException {
+    Files.write(textFile.toPath(), contents.getBytes(StandardCharsets.UTF_8));
+    assertEquals(numBallots, BallotFileConverter.convert(textFile, binaryFile));
+    try (BallotReader text = new MappedBallotReader(textFile);
+         BallotReader binary = BallotReader.open(binaryFile)) {
+      for (int i = 0; i < numHeader; i++) {
+        assertEquals(text.readLine(), binary.readLine());
+      }
+      List<int[]> textBallots = new ArrayList<>();
+      List<int[]> binaryBallots = new ArrayList<>();
+      text.readBallots(Integer.MAX_VALUE, numFields, (ordinal, fields) -> {
+        textBallots.add(fields.clone());
+      });
+      binary.readBallots(Integer.MAX_VALUE, numFields, (ordinal, fields) -> {
+        binaryBallots.add(fields.clone());
+      });
+      assertEquals(numBallots, binaryBallots.size());
+      for (int i = 0; i < numBallots; i++) {
+        assertArrayEquals(textBallots.get(i), binaryBallots.get(i));
+      }
+    }
+  }
+
+  @Test
+  public void testConvertInstantRunoff() throws IOException {
+    assertConvertsSame("IR\n4\nRosen (D),Kleinberg (R),Chou (I),Royce (L)\n6\n"
+        + "1,3,4,2\n1,,2,\n1,2,3,\n3,2,1,4\n,,1,2\n,,,1\n", 4, 4, 6);
+  }
+
+  @Test
+  public void testConvertOpenPartyList() throws IOException {
+    assertConvertsSame("OPL\n3\n[Pike,D],[Foster,D],[Borg,R]\n2\n4\n"
+        + "1,,\n,1,\n,,1\n1,,\n", 5, 3, 4);
+  }
+
+  @Test
+  public void testConvertDivisorMethod() throws IOException {
+    assertConvertsSame("DHONDT\n3\n[Pike,D],[Foster,D],[Borg,R]\n2\n4\n"
+        + "1,,\n,1,\n,,1\n1,,\n", 5, 3, 4);
+  }
+
+  @Test
+  public void testConvertPopularityOnly() throws IOException {
+    assertConvertsSame("PO\n2\n[Pike,D],[Borg,R]\n3\n,1\n1,\n,1\n", 4, 2, 3);
+  }
+
+  @Test
+  public void testConvertUnknownType() throws IOException {
+    Files.write(textFile.toPath(), "STV\n0\n".getBytes(StandardCharsets.UTF_8));
+    assertThrows(IOException.class, () -> BallotFileConverter.convert(textFile, binaryFile));
+  }
+}
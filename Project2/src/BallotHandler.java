@@ -0,0 +1,15 @@
+/**
+ * Receives the ballots of an election file one at a time as they are read, so an election
+ * can count each ballot without keeping the line it came from.
+ * BallotHandler.java
+ */
+public interface BallotHandler {
+  /**
+   * Counts one ballot.
+   *
+   * @param ordinal position of the ballot among the ballots of the file, starting at 0
+   * @param fields  value of each field of the ballot, 0 if the field was empty;
+   *                the array is reused for the next ballot
+   */
+  void countBallot(int ordinal, int[] fields);
+}
@@ -0,0 +1,301 @@
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.Arrays;
+
+/**
+ * The offset of every stride of lines of an election file, kept in a sidecar file next to it
+ * so it only has to be found once. Only the start of every STRIDE-th line is kept, so the
+ * index stays small however long the file is. MappedBallotReader uses the index, when there
+ * is one, to split the ballots into chunks without looking for line endings, and to read any
+ * ballot directly by going to the start of its stride and skipping the lines before it.
+ * The sidecar file is the election file's name followed by ".idx". It starts with the magic
+ * number, the size and modification time of the election file, the number of lines and the
+ * stride, followed by the length of each stride including its line endings, all as unsigned
+ * varints.
+ * Run it with the election file to index it, and optionally ballot numbers to print:
+ * java BallotIndex election.csv 12 40
+ * BallotIndex.java
+ */
+public class BallotIndex {
+  /**
+   * Bytes at the start of every index file.
+   */
+  public static final byte[] MAGIC = {'V', 'S', 'I', 2};
+
+  /**
+   * Number of lines between two offsets kept in the index.
+   */
+  public static final int STRIDE = 1024;
+
+  private static final int BUFFER_SIZE = 1 << 16;
+
+  private final long[] strideStarts;
+  private final int numLines;
+  private final int stride;
+
+  /**
+   * Constructor for BallotIndex.
+   *
+   * @param strideStarts offset of the start of each stride, followed by the size of the file
+   * @param numLines     number of lines in the file
+   * @param stride       number of lines in each stride
+   */
+  private BallotIndex(long[] strideStarts, int numLines, int stride) {
+    this.strideStarts = strideStarts;
+    this.numLines = numLines;
+    this.stride = stride;
+  }
+
+  /**
+   * Main method that indexes an election file and prints the ballots asked for.
+   *
+   * @param args the election file, then the numbers of ballots to print as they are numbered
+   *     in the audit file
+   */
+  public static void main(String[] args) {
+    if (args.length == 0) {
+      System.out.println("Usage: java BallotIndex <election file> [ballot number]...");
+      return;
+    }
+    File file = new File(args[0]);
+    try {
+      BallotIndex index = build(file);
+      index.write(file);
+      System.out.printf("Indexed %d lines of %s%n", index.getNumLines(), args[0]);
+      if (args.length > 1) {
+        try (MappedBallotReader reader = new MappedBallotReader(file)) {
+          String type = reader.readLine();
+          int numHeaderLines = OpenPartyList.isPartyList(type) ? 4 : 3;
+          for (int i = 0; i < numHeaderLines; i++) {
+            reader.readLine();
+          }
+          for (int i = 1; i < args.length; i++) {
+            int ballot = Integer.parseInt(args[i]);
+            System.out.printf("Ballot %d: %s%n", ballot, reader.readBallotLine(ballot - 1));
+          }
+        }
+      }
+    } catch (IOException | NumberFormatException e) {
+      e.printStackTrace();
+    }
+  }
+
+  /**
+   * Finds the offset of every stride of lines of a file.
+   *
+   * @param file the election file
+   * @return the index of the file
+   * @throws IOException if the file cannot be read or has too many lines
+   */
+  public static BallotIndex build(File file) throws IOException {
+    return build(file, STRIDE);
+  }
+
+  /**
+   * Finds the offset of every stride of lines of a file.
+   *
+   * @param file   the election file
+   * @param stride number of lines in each stride
+   * @return the index of the file
+   * @throws IOException if the file cannot be read or has too many lines
+   */
+  static BallotIndex build(File file, int stride) throws IOException {
+    long[] strideStarts = new long[1024];
+    int numStrides = 0;
+    long numLines = 0;
+    long offset = 0;
+    boolean lineStarted = false;
+    try (InputStream in = new FileInputStream(file)) {
+      byte[] buffer = new byte[BUFFER_SIZE];
+      int read;
+      while ((read = in.read(buffer)) != -1) {
+        for (int i = 0; i < read; i++) {
+          if (!lineStarted) {
+            if (numLines % stride == 0) {
+              if (numStrides + 1 >= strideStarts.length) {
+                strideStarts = Arrays.copyOf(strideStarts, strideStarts.length * 2);
+              }
+              strideStarts[numStrides++] = offset + i;
+            }
+            numLines++;
+            lineStarted = true;
+          }
+          if (buffer[i] == '\n') {
+            lineStarted = false;
+          }
+        }
+        offset += read;
+      }
+    }
+    strideStarts[numStrides] = offset;
+    return new BallotIndex(Arrays.copyOf(strideStarts, numStrides + 1), checkNumLines(numLines),
+        stride);
+  }
+
+  /**
+   * Gets the sidecar index file of an election file.
+   *
+   * @param file the election file
+   * @return the index file, which may not exist
+   */
+  public static File sidecar(File file) {
+    return new File(file.getPath() + ".idx");
+  }
+
+  /**
+   * Reads the sidecar index of an election file, if it has one that is up to date.
+   *
+   * @param file the election file
+   * @return the index, or null if there is no index, or it is in an older format, or the file
+   *     changed since it was written
+   * @throws IOException if the index cannot be read or is not valid
+   */
+  public static BallotIndex load(File file) throws IOException {
+    File sidecar = sidecar(file);
+    if (!sidecar.isFile()) {
+      return null;
+    }
+    try (InputStream in = new BufferedInputStream(new FileInputStream(sidecar), BUFFER_SIZE)) {
+      for (int i = 0; i < MAGIC.length - 1; i++) {
+        if (in.read() != (MAGIC[i] & 0xff)) {
+          throw new IOException(sidecar + " is not a ballot index");
+        }
+      }
+      // an index written in an older format is out of date like one of a changed file
+      if (in.read() != MAGIC[MAGIC.length - 1]) {
+        return null;
+      }
+      if (readVarLong(in) != file.length() || readVarLong(in) != file.lastModified()) {
+        return null;
+      }
+      int numLines = checkNumLines(readVarLong(in));
+      long stride = readVarLong(in);
+      if (stride <= 0 || stride > Integer.MAX_VALUE) {
+        throw new IOException(sidecar + " has a stride of " + stride + " lines");
+      }
+      long[] strideStarts = new long[numStrides(numLines, (int) stride) + 1];
+      for (int i = 1; i < strideStarts.length; i++) {
+        strideStarts[i] = strideStarts[i - 1] + readVarLong(in);
+      }
+      return new BallotIndex(strideStarts, numLines, (int) stride);
+    }
+  }
+
+  /**
+   * Writes the index to the sidecar file of an election file.
+   *
+   * @param file the election file that was indexed
+   * @throws IOException if the index cannot be written
+   */
+  public void write(File file) throws IOException {
+    try (OutputStream out = new BufferedOutputStream(
+        new FileOutputStream(sidecar(file)), BUFFER_SIZE)) {
+      out.write(MAGIC);
+      writeVarLong(out, file.length());
+      writeVarLong(out, file.lastModified());
+      writeVarLong(out, numLines);
+      writeVarLong(out, stride);
+      for (int i = 1; i < strideStarts.length; i++) {
+        writeVarLong(out, strideStarts[i] - strideStarts[i - 1]);
+      }
+    }
+  }
+
+  /**
+   * Gets the number of lines in the file.
+   *
+   * @return number of lines
+   */
+  public int getNumLines() {
+    return numLines;
+  }
+
+  /**
+   * Gets the number of lines in each stride. Every stride but the last has this many lines.
+   *
+   * @return number of lines in a stride
+   */
+  public int getStride() {
+    return stride;
+  }
+
+  /**
+   * Gets the offset in the file of the start of a stride, which is the start of its first
+   * line. The stride after the last starts at the size of the file.
+   *
+   * @param strideNumber number of the stride, starting at 0
+   * @return offset of the first byte of the stride
+   */
+  public long getStrideStart(int strideNumber) {
+    return strideStarts[strideNumber];
+  }
+
+  /**
+   * Gets the number of strides a number of lines is split into.
+   *
+   * @param numLines number of lines
+   * @param stride   number of lines in each stride
+   * @return number of strides, counting a last stride that is not full
+   */
+  private static int numStrides(int numLines, int stride) {
+    return (int) (((long) numLines + stride - 1) / stride);
+  }
+
+  /**
+   * Checks that a number of lines can be numbered with an int, as ballots are.
+   *
+   * @param numLines number of lines
+   * @return the number of lines
+   * @throws IOException if there are more lines than an int can number
+   */
+  private static int checkNumLines(long numLines) throws IOException {
+    if (numLines < 0 || numLines > Integer.MAX_VALUE) {
+      throw new IOException("Election file has too many lines to index: " + numLines);
+    }
+    return (int) numLines;
+  }
+
+  /**
+   * Reads an unsigned varint, seven bits per byte with the lowest bits first.
+   *
+   * @param in stream to read from
+   * @return the number
+   * @throws IOException if the stream ends in the middle of the number
+   */
+  private static long readVarLong(InputStream in) throws IOException {
+    long value = 0;
+    for (int shift = 0; shift < 64; shift += 7) {
+      int b = in.read();
+      if (b == -1) {
+        throw new EOFException("Ballot index ends in the middle of a number");
+      }
+      value |= (long) (b & 0x7f) << shift;
+      if ((b & 0x80) == 0) {
+        return value;
+      }
+    }
+    throw new IOException("Varint in the ballot index is too long");
+  }
+
+  /**
+   * Writes an unsigned varint, seven bits per byte with the lowest bits first.
+   *
+   * @param out   stream to write to
+   * @param value the number, treated as unsigned
+   * @throws IOException if the stream cannot be written
+   */
+  private static void writeVarLong(OutputStream out, long value) throws IOException {
+    while ((value & ~0x7fL) != 0) {
+      out.write((int) (value & 0x7f) | 0x80);
+      value >>>= 7;
+    }
+    out.write((int) value);
+  }
+}
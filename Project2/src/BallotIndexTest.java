@@ -0,0 +1,122 @@
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+/**
+ * Tests the methods for the BallotIndex class.
+ * BallotIndexTest.java
+ */
+public class BallotIndexTest {
+  private File file;
+
+  /**
+   * Write a short election file for testing.
+   *
+   * @throws IOException if the file cannot be written
+   */
+  @BeforeEach
+  public void setUp() throws IOException {
+    file = File.createTempFile("election", ".csv");
+    Files.write(file.toPath(), "IR\r\n3\n\n1,3,2\n,1,".getBytes(StandardCharsets.UTF_8));
+  }
+
+  @AfterEach
+  public void tearDown() {
+    file.delete();
+    BallotIndex.sidecar(file).delete();
+  }
+
+  @Test
+  public void testBuild() throws IOException {
+    BallotIndex index = BallotIndex.build(file);
+    assertEquals(5, index.getNumLines());
+    assertEquals(BallotIndex.STRIDE, index.getStride());
+    assertEquals(0, index.getStrideStart(0));
+    assertEquals(16, index.getStrideStart(1));
+  }
+
+  @Test
+  public void testBuildStrides() throws IOException {
+    BallotIndex index = BallotIndex.build(file, 2);
+    assertEquals(5, index.getNumLines());
+    assertEquals(0, index.getStrideStart(0));
+    assertEquals(6, index.getStrideStart(1));
+    assertEquals(13, index.getStrideStart(2));
+    assertEquals(16, index.getStrideStart(3));
+  }
+
+  @Test
+  public void testBuildTrailingNewline() throws IOException {
+    Files.write(file.toPath(), "PO\n\n".getBytes(StandardCharsets.UTF_8));
+    BallotIndex index = BallotIndex.build(file, 2);
+    assertEquals(2, index.getNumLines());
+    assertEquals(4, index.getStrideStart(1));
+  }
+
+  @Test
+  public void testWriteAndLoad() throws IOException {
+    assertNull(BallotIndex.load(file));
+    BallotIndex.build(file, 2).write(file);
+    BallotIndex index = BallotIndex.load(file);
+    assertNotNull(index);
+    assertEquals(5, index.getNumLines());
+    assertEquals(2, index.getStride());
+    for (int i = 0; i <= 3; i++) {
+      assertEquals(BallotIndex.build(file, 2).getStrideStart(i), index.getStrideStart(i));
+    }
+  }
+
+  @Test
+  public void testLoadOlderFormat() throws IOException {
+    try (OutputStream out = new FileOutputStream(BallotIndex.sidecar(file))) {
+      out.write(new byte[]{'V', 'S', 'I', 1});
+      writeVarLong(out, file.length());
+      writeVarLong(out, file.lastModified());
+    }
+    assertNull(BallotIndex.load(file));
+  }
+
+  @Test
+  public void testLoadTooManyLines() throws IOException {
+    try (OutputStream out = new FileOutputStream(BallotIndex.sidecar(file))) {
+      out.write(BallotIndex.MAGIC);
+      writeVarLong(out, file.length());
+      writeVarLong(out, file.lastModified());
+      writeVarLong(out, Integer.MAX_VALUE + 1L);
+    }
+    assertThrows(IOException.class, () -> BallotIndex.load(file));
+  }
+
+  @Test
+  public void testLoadChangedFile() throws IOException {
+    BallotIndex.build(file).write(file);
+    Files.write(file.toPath(), "IR\n3\n\n1,3,2\n,1,\n,,1\n".getBytes(StandardCharsets.UTF_8));
+    assertNull(BallotIndex.load(file));
+  }
+
+  /**
+   * Writes an unsigned varint as the index file holds them.
+   *
+   * @param out   stream to write to
+   * @param value the number
+   * @throws IOException if the stream cannot be written
+   */
+  private static void writeVarLong(OutputStream out, long value) throws IOException {
+    while ((value & ~0x7fL) != 0) {
+      out.write((int) (value & 0x7f) | 0x80);
+      value >>>= 7;
+    }
+    out.write((int) value);
+  }
+}
@@ -0,0 +1,217 @@
+import java.io.BufferedInputStream;
+import java.io.ByteArrayInputStream;
+import java.io.Closeable;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.SequenceInputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
+import java.util.zip.GZIPInputStream;
+
+/**
+ * An abstract class for the different ways of reading an election file. The header lines are
+ * read as strings, and the ballots are handed to a BallotHandler as arrays of numbers.
+ * BallotReader.java
+ */
+public abstract class BallotReader implements Closeable {
+  private static final int STREAM_BUFFER_SIZE = 1 << 16;
+  private static final byte[] GZIP_MAGIC = {0x1f, (byte) 0x8b};
+
+  /**
+   * Opens an election file with the reader for its format, which is chosen from the magic
+   * number at the start of the file. Gzip files are decompressed as they are read, without
+   * writing the uncompressed file anywhere. Files without a known magic number are read as text.
+   * Named pipes and other files that are not regular files are read as a channel.
+   *
+   * @param file the election file
+   * @return a reader positioned at the type of election
+   * @throws IOException if the file cannot be opened
+   */
+  public static BallotReader open(File file) throws IOException {
+    if (!file.isFile()) {
+      return open(FileChannel.open(file.toPath(), StandardOpenOption.READ));
+    }
+    byte[] start = new byte[Math.max(GZIP_MAGIC.length, BinaryBallotReader.MAGIC.length)];
+    int length;
+    try (InputStream in = new FileInputStream(file)) {
+      length = in.readNBytes(start, 0, start.length);
+    }
+    if (startsWith(start, length, GZIP_MAGIC)) {
+      InputStream in = new FileInputStream(file);
+      try {
+        return open(new GZIPInputStream(in, STREAM_BUFFER_SIZE));
+      } catch (IOException e) {
+        in.close();
+        throw e;
+      }
+    }
+    if (startsWith(start, length, BinaryBallotReader.MAGIC)) {
+      return new BinaryBallotReader(file);
+    }
+    return new MappedBallotReader(file);
+  }
+
+  /**
+   * Opens an election read from a channel, such as standard input or a named pipe, with the
+   * reader for its format. The channel is only read once, from start to end, so the bytes read
+   * to find the magic number are handed on to the reader.
+   *
+   * @param channel channel of the election file
+   * @return a reader positioned at the type of election
+   * @throws IOException if the channel cannot be read
+   */
+  public static BallotReader open(ReadableByteChannel channel) throws IOException {
+    ByteBuffer start = ByteBuffer.allocate(
+        Math.max(GZIP_MAGIC.length, BinaryBallotReader.MAGIC.length));
+    int read = 0;
+    while (start.hasRemaining() && read != -1) {
+      read = channel.read(start);
+    }
+    start.flip();
+    int length = start.limit();
+    byte[] bytes = new byte[length];
+    start.get(0, bytes);
+    if (startsWith(bytes, length, GZIP_MAGIC)
+        || startsWith(bytes, length, BinaryBallotReader.MAGIC)) {
+      InputStream in = new SequenceInputStream(new ByteArrayInputStream(bytes),
+          Channels.newInputStream(channel));
+      if (startsWith(bytes, length, GZIP_MAGIC)) {
+        in = new GZIPInputStream(in, STREAM_BUFFER_SIZE);
+      }
+      return open(in);
+    }
+    return new ChannelBallotReader(channel, start);
+  }
+
+  /**
+   * Opens an election read from a stream with the reader for its format. Streams starting with
+   * the magic number of the binary format are read as binary, and other streams as text.
+   *
+   * @param in stream of the election file
+   * @return a reader positioned at the type of election
+   * @throws IOException if the stream cannot be read
+   */
+  public static BallotReader open(InputStream in) throws IOException {
+    BufferedInputStream buffered = new BufferedInputStream(in, STREAM_BUFFER_SIZE);
+    byte[] magic = BinaryBallotReader.MAGIC;
+    buffered.mark(magic.length);
+    byte[] start = new byte[magic.length];
+    int length = buffered.readNBytes(start, 0, start.length);
+    buffered.reset();
+    if (startsWith(start, length, magic)) {
+      return new BinaryBallotReader(buffered);
+    }
+    return new ChannelBallotReader(Channels.newChannel(buffered));
+  }
+
+  /**
+   * Checks whether the first bytes of a file are the given bytes.
+   *
+   * @param start  the first bytes of the file
+   * @param length number of bytes read into start, less than its length for short files
+   * @param magic  the bytes to look for
+   * @return true if the file starts with the given bytes
+   */
+  private static boolean startsWith(byte[] start, int length, byte[] magic) {
+    if (length < magic.length) {
+      return false;
+    }
+    for (int i = 0; i < magic.length; i++) {
+      if (start[i] != magic[i]) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  /**
+   * Reads the next line of the file as a string, for the header of the file.
+   *
+   * @return the line without its line ending, null at the end of the file
+   * @throws IOException if the file cannot be read
+   */
+  public abstract String readLine() throws IOException;
+
+  /**
+   * Reads the fields of the next ballot line into an array with a BallotTokenizer. Empty fields
+   * are read as 0, and fields past the end of the array are ignored.
+   *
+   * @param fields  filled with the value of each field of the ballot
+   * @param ordinal position of the ballot among the ballots of the file, starting at 0
+   * @return false if the end of the file was reached before the ballot
+   * @throws IOException if the file cannot be read or a field is not a number
+   */
+  protected abstract boolean nextBallot(int[] fields, int ordinal) throws IOException;
+
+  /**
+   * Reads ballots until enough have been read or the file ends, giving each one to a handler.
+   *
+   * @param maxBallots largest number of ballots to read
+   * @param numFields  number of fields of a ballot, usually the number of candidates
+   * @param handler    counts each ballot
+   * @return number of ballots read
+   * @throws IOException if the file cannot be read or a field is not a number
+   */
+  public int readBallots(int maxBallots, int numFields, BallotHandler handler)
+      throws IOException {
+    int[] fields = new int[numFields];
+    int count = 0;
+    while (count < maxBallots && nextBallot(fields, count)) {
+      handler.countBallot(count, fields);
+      count++;
+    }
+    return count;
+  }
+
+  /**
+   * Reads ballots until enough have been read or the file ends, counting them into chunks.
+   * Each ballot is given its position in the file as its ordinal, and the chunks are returned
+   * in file order. Every chunk is kept until all of them are returned, so countBallotChunks
+   * should be used instead when the chunks can be merged one at a time.
+   *
+   * @param maxBallots largest number of ballots to read
+   * @param numFields  number of fields of a ballot, usually the number of candidates
+   * @param newChunk   makes an empty chunk for each part of the file
+   * @param <T>        type of chunk
+   * @return the chunks the ballots were counted into, in file order
+   * @throws IOException if the file cannot be read or a field is not a number
+   */
+  public <T extends BallotChunk> List<T> readBallotChunks(int maxBallots, int numFields,
+      Supplier<T> newChunk) throws IOException {
+    List<T> chunks = new ArrayList<>();
+    countBallotChunks(maxBallots, numFields, newChunk, chunks::add);
+    return chunks;
+  }
+
+  /**
+   * Reads ballots until enough have been read or the file ends, counting them into chunks and
+   * giving each chunk to a consumer as soon as it is counted. Readers that can split the file
+   * count the chunks on several threads; otherwise every ballot is counted into a single chunk
+   * on the calling thread. Either way, each ballot is given its position in the file as its
+   * ordinal, and the chunks are given to the consumer one at a time on the calling thread, in
+   * file order. The reader keeps no chunk once it has been given away, so only the chunks still
+   * being counted are held in memory.
+   *
+   * @param maxBallots largest number of ballots to read
+   * @param numFields  number of fields of a ballot, usually the number of candidates
+   * @param newChunk   makes an empty chunk for each part of the file
+   * @param counted    given each chunk once its ballots have been counted
+   * @param <T>        type of chunk
+   * @throws IOException if the file cannot be read or a field is not a number
+   */
+  public <T extends BallotChunk> void countBallotChunks(int maxBallots, int numFields,
+      Supplier<T> newChunk, Consumer<T> counted) throws IOException {
+    T chunk = newChunk.get();
+    readBallots(maxBallots, numFields, chunk);
+    counted.accept(chunk);
+  }
+}
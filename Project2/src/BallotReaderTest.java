@@ -0,0 +1,142 @@
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.channels.Channels;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.zip.GZIPOutputStream;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Tests the methods for the BallotReader class.
+ * BallotReaderTest.java
+ */
+public class BallotReaderTest {
+  private static final String ELECTION =
+      "IR\n3\nRosen (D),Kleinberg (R),Chou (I)\n3\n1,3,2\n,1,\n12,,\n";
+
+  private File file;
+
+  /**
+   * Create a file for testing.
+   *
+   * @throws IOException if the file cannot be created
+   */
+  @BeforeEach
+  public void setUp() throws IOException {
+    file = File.createTempFile("election", ".csv");
+  }
+
+  @AfterEach
+  public void tearDown() {
+    file.delete();
+  }
+
+  /**
+   * Checks that a reader reads the election in ELECTION.
+   *
+   * @param reader the reader, positioned at the type of election
+   * @throws IOException if the reader cannot read the election
+   */
+  private void assertReadsElection(BallotReader reader) throws IOException {
+    assertEquals("IR", reader.readLine());
+    assertEquals("3", reader.readLine());
+    assertEquals("Rosen (D),Kleinberg (R),Chou (I)", reader.readLine());
+    assertEquals("3", reader.readLine());
+    int[][] read = new int[3][];
+    assertEquals(3, reader.readBallots(10, 3, (ordinal, fields) -> {
+      read[ordinal] = fields.clone();
+    }));
+    assertArrayEquals(new int[]{1, 3, 2}, read[0]);
+    assertArrayEquals(new int[]{0, 1, 0}, read[1]);
+    assertArrayEquals(new int[]{12, 0, 0}, read[2]);
+    assertNull(reader.readLine());
+  }
+
+  @Test
+  public void testOpenText() throws IOException {
+    Files.write(file.toPath(), ELECTION.getBytes(StandardCharsets.UTF_8));
+    try (BallotReader reader = BallotReader.open(file)) {
+      assertTrue(reader instanceof MappedBallotReader);
+      assertReadsElection(reader);
+    }
+  }
+
+  @Test
+  public void testOpenGzipText() throws IOException {
+    try (OutputStream out = new GZIPOutputStream(new FileOutputStream(file))) {
+      out.write(ELECTION.getBytes(StandardCharsets.UTF_8));
+    }
+    try (BallotReader reader = BallotReader.open(file)) {
+      assertTrue(reader instanceof ChannelBallotReader);
+      assertReadsElection(reader);
+    }
+  }
+
+  @Test
+  public void testOpenGzipBinary() throws IOException {
+    File textFile = File.createTempFile("election", ".csv");
+    File binaryFile = File.createTempFile("election", ".vsb");
+    try {
+      Files.write(textFile.toPath(), ELECTION.getBytes(StandardCharsets.UTF_8));
+      BallotFileConverter.convert(textFile, binaryFile);
+      try (OutputStream out = new GZIPOutputStream(new FileOutputStream(file))) {
+        out.write(Files.readAllBytes(binaryFile.toPath()));
+      }
+    } finally {
+      textFile.delete();
+      binaryFile.delete();
+    }
+    try (BallotReader reader = BallotReader.open(file)) {
+      assertTrue(reader instanceof BinaryBallotReader);
+      assertReadsElection(reader);
+    }
+  }
+
+  @Test
+  public void testOpenStream() throws IOException {
+    try (BallotReader reader = BallotReader.open(
+        new ByteArrayInputStream(ELECTION.getBytes(StandardCharsets.UTF_8)))) {
+      assertReadsElection(reader);
+    }
+  }
+
+  @Test
+  public void testOpenChannel() throws IOException {
+    try (BallotReader reader = BallotReader.open(Channels.newChannel(
+        new ByteArrayInputStream(ELECTION.getBytes(StandardCharsets.UTF_8))))) {
+      assertTrue(reader instanceof ChannelBallotReader);
+      assertReadsElection(reader);
+    }
+  }
+
+  @Test
+  public void testOpenGzipChannel() throws IOException {
+    ByteArrayOutputStream compressed = new ByteArrayOutputStream();
+    try (OutputStream out = new GZIPOutputStream(compressed)) {
+      out.write(ELECTION.getBytes(StandardCharsets.UTF_8));
+    }
+    try (BallotReader reader = BallotReader.open(Channels.newChannel(
+        new ByteArrayInputStream(compressed.toByteArray())))) {
+      assertReadsElection(reader);
+    }
+  }
+
+  @Test
+  public void testOpenShortFile() throws IOException {
+    Files.write(file.toPath(), new byte[]{0x1f});
+    try (BallotReader reader = BallotReader.open(file)) {
+      assertTrue(reader instanceof MappedBallotReader);
+    }
+  }
+}
@@ -0,0 +1,109 @@
+import java.util.Arrays;
+import java.util.BitSet;
+
+/**
+ * An abstract class for the different ways of storing the ranked ballots of an instant
+ * runoff election while the votes are counted.
+ * BallotStore.java
+ */
+public abstract class BallotStore {
+  // scratch space used to sort the marks of a sparse ballot into its preference order
+  private long[] sortedMarks = new long[16];
+  private int[] markOrder = new int[16];
+
+  /**
+   * Adds a ballot to the store and gives it to its first choice candidate.
+   * The preference order stops at the first rank that no candidate was given.
+   *
+   * @param rankedVote rank given to each candidate, 0 if the candidate was not ranked
+   * @return index of the entry in the store that the ballot was added to
+   */
+  public abstract int addBallot(int[] rankedVote);
+
+  /**
+   * Adds a ballot given as the candidates it marks and the rank given to each, and gives it to
+   * its first choice candidate. Only the marked candidates are looked at, so this takes time
+   * proportional to the number of marks and not to the number of candidates in the election.
+   * The preference order is the same as for addBallot.
+   *
+   * @param candidates index of each marked candidate, in the order they are listed
+   * @param ranks      rank given to each marked candidate
+   * @param numMarked  number of marked candidates
+   * @return index of the entry in the store that the ballot was added to
+   */
+  public int addMarks(int[] candidates, int[] ranks, int numMarked) {
+    if (numMarked > sortedMarks.length) {
+      sortedMarks = new long[Math.max(numMarked, sortedMarks.length * 2)];
+      markOrder = new int[sortedMarks.length];
+    }
+    // sorting on rank, then on position, lets the first candidate listed take a shared rank
+    for (int i = 0; i < numMarked; i++) {
+      sortedMarks[i] = ((long) ranks[i] << 32) | i;
+    }
+    Arrays.sort(sortedMarks, 0, numMarked);
+    int length = 0;
+    for (int i = 0; i < numMarked; i++) {
+      long rank = sortedMarks[i] >> 32;
+      if (rank < length + 1) {
+        continue;
+      }
+      if (rank > length + 1) {
+        break;
+      }
+      markOrder[length++] = candidates[(int) sortedMarks[i]];
+    }
+    return addGroup(markOrder, 0, length, 1);
+  }
+
+  /**
+   * Adds a group of ballots that all have the same preference order to the store, and gives
+   * them to their first choice candidate.
+   *
+   * @param order     array holding the preference order, as candidate indices
+   * @param start     position in the array of the first choice
+   * @param length number of candidates in the preference order
+   * @param weight number of ballots in the group
+   * @return index of the entry in the store that the ballots were added to
+   */
+  public abstract int addGroup(int[] order, int start, int length, int weight);
+
+  /**
+   * Gets the number of ballots added to the store.
+   *
+   * @return number of ballots
+   */
+  public abstract int getNumBallots();
+
+  /**
+   * Gets the number of ballots currently held by a candidate.
+   *
+   * @param candidate index of the candidate
+   * @return number of ballots the candidate holds
+   */
+  public abstract int countHeldBallots(int candidate);
+
+  /**
+   * Moves every ballot held by an eliminated candidate to its next choice that has not been
+   * eliminated.
+   *
+   * @param loser      index of the eliminated candidate
+   * @param eliminated set of the indices of the eliminated candidates, including the loser
+   * @param received   filled with the number of ballots each candidate received
+   * @return number of ballots that had no next choice and were deleted
+   */
+  public abstract int transferBallots(int loser, BitSet eliminated, int[] received);
+
+  /**
+   * Frees the space used by ballots that are no longer held by any candidate, once enough
+   * of the store has become unused to make it worthwhile. No ballots can be added after the
+   * store has been compacted.
+   */
+  public abstract void compact();
+
+  /**
+   * Gets the approximate number of bytes used by the arrays of the store.
+   *
+   * @return number of bytes
+   */
+  public abstract long getStorageBytes();
+}
@@ -0,0 +1,234 @@
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+/**
+ * Splits one line of an election file into its comma-separated fields without making any
+ * strings. The line can be held in a byte buffer or in any character sequence, and fields are
+ * given as offsets into it, or as numbers decoded straight from the ASCII digits. One tokenizer
+ * is reset for each line, so reading ballots with it does not allocate anything.
+ * BallotTokenizer.java
+ */
+public final class BallotTokenizer {
+  private ByteBuffer bytes;
+  private CharSequence chars;
+  private int position;
+  private int end;
+  private boolean hasMore;
+  private int fieldStart;
+  private int fieldEnd;
+
+  /**
+   * Starts reading a line held in a byte buffer.
+   *
+   * @param bytes buffer holding the line
+   * @param start position in the buffer of the first character of the line
+   * @param end   position in the buffer after the last character of the line
+   */
+  public void reset(ByteBuffer bytes, int start, int end) {
+    this.bytes = bytes;
+    this.chars = null;
+    start(start, end);
+  }
+
+  /**
+   * Starts reading a line held in a character sequence.
+   *
+   * @param chars sequence holding the line
+   * @param start position in the sequence of the first character of the line
+   * @param end   position in the sequence after the last character of the line
+   */
+  public void reset(CharSequence chars, int start, int end) {
+    this.bytes = null;
+    this.chars = chars;
+    start(start, end);
+  }
+
+  /**
+   * Starts reading a line held in a character sequence.
+   *
+   * @param chars the line
+   */
+  public void reset(CharSequence chars) {
+    reset(chars, 0, chars.length());
+  }
+
+  /**
+   * Sets up the positions for a new line, leaving off a carriage return at its end.
+   *
+   * @param start position of the first character of the line
+   * @param end   position after the last character of the line
+   */
+  private void start(int start, int end) {
+    if (end > start && charAt(end - 1) == '\r') {
+      end--;
+    }
+    this.position = start;
+    this.end = end;
+    this.hasMore = true;
+    this.fieldStart = start;
+    this.fieldEnd = start;
+  }
+
+  /**
+   * Gets a character of the line.
+   *
+   * @param i position of the character
+   * @return the character
+   */
+  public char charAt(int i) {
+    return bytes != null ? (char) (bytes.get(i) & 0xff) : chars.charAt(i);
+  }
+
+  /**
+   * Moves on to the next field of the line. A line always has at least one field, which is
+   * empty if the line is.
+   *
+   * @return false if there are no more fields
+   */
+  public boolean nextField() {
+    if (!hasMore) {
+      return false;
+    }
+    fieldStart = position;
+    int i = position;
+    while (i < end && charAt(i) != ',') {
+      i++;
+    }
+    fieldEnd = i;
+    if (i < end) {
+      position = i + 1;
+    } else {
+      hasMore = false;
+    }
+    return true;
+  }
+
+  /**
+   * Gets the position of the first character of the current field.
+   *
+   * @return position in the line's buffer or sequence
+   */
+  public int getFieldStart() {
+    return fieldStart;
+  }
+
+  /**
+   * Gets the position after the last character of the current field.
+   *
+   * @return position in the line's buffer or sequence
+   */
+  public int getFieldEnd() {
+    return fieldEnd;
+  }
+
+  /**
+   * Checks whether the current field is empty.
+   *
+   * @return true if the field has no characters
+   */
+  public boolean isFieldEmpty() {
+    return fieldStart == fieldEnd;
+  }
+
+  /**
+   * Decodes the current field as a number. Spaces before and after the digits are skipped,
+   * and an empty field is 0.
+   *
+   * @param ordinal position of the ballot among the ballots of the file, for the error message
+   * @return the value of the field
+   * @throws IOException if the field has a character other than a digit or a space, a space
+   *     between two digits, or a number too large for an int
+   */
+  public int fieldInt(int ordinal) throws IOException {
+    int i = fieldStart;
+    int last = fieldEnd;
+    while (i < last && charAt(i) == ' ') {
+      i++;
+    }
+    while (last > i && charAt(last - 1) == ' ') {
+      last--;
+    }
+    int value = 0;
+    for (; i < last; i++) {
+      char c = charAt(i);
+      if (c < '0' || c > '9') {
+        throw new IOException(
+            String.format("Ballot %d has the character '%c' in a field", ordinal + 1, c));
+      }
+      if (value > (Integer.MAX_VALUE - (c - '0')) / 10) {
+        throw new IOException(
+            String.format("Ballot %d has a number too large in a field", ordinal + 1));
+      }
+      value = value * 10 + (c - '0');
+    }
+    return value;
+  }
+
+  /**
+   * Reads every field of the line as a number into an array. Empty fields are read as 0,
+   * and fields past the end of the array are ignored.
+   *
+   * @param fields  filled with the value of each field
+   * @param ordinal position of the ballot among the ballots of the file, for the error message
+   * @throws IOException if a field has a character other than a digit or a space
+   */
+  public void readFields(int[] fields, int ordinal) throws IOException {
+    Arrays.fill(fields, 0);
+    int field = 0;
+    while (nextField()) {
+      if (field < fields.length) {
+        fields[field] = fieldInt(ordinal);
+      } else {
+        fieldInt(ordinal);
+      }
+      field++;
+    }
+  }
+
+  /**
+   * Finds a character in the current field.
+   *
+   * @param c the character to find
+   * @return position of the last time the character appears in the field, -1 if it does not
+   */
+  public int lastIndexInField(char c) {
+    for (int i = fieldEnd - 1; i >= fieldStart; i--) {
+      if (charAt(i) == c) {
+        return i;
+      }
+    }
+    return -1;
+  }
+
+  /**
+   * Makes a string of part of the line, leaving off a bracket at either end. This is meant
+   * for the header lines of a file, which are only read once.
+   *
+   * @param from position of the first character
+   * @param to   position after the last character
+   * @return the characters as a string
+   */
+  public String substring(int from, int to) {
+    if (from < to && charAt(from) == '[') {
+      from++;
+    }
+    if (from < to && charAt(to - 1) == ']') {
+      to--;
+    }
+    StringBuilder builder = new StringBuilder(Math.max(to - from, 0));
+    for (int i = from; i < to; i++) {
+      builder.append(charAt(i));
+    }
+    return builder.toString();
+  }
+
+  /**
+   * Makes a string of the current field, leaving off a bracket at either end.
+   *
+   * @return the field as a string
+   */
+  public String fieldString() {
+    return substring(fieldStart, fieldEnd);
+  }
+}
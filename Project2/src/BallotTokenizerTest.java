@@ -0,0 +1,140 @@
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Tests the methods for the BallotTokenizer class.
+ * BallotTokenizerTest.java
+ */
+public class BallotTokenizerTest {
+  private final BallotTokenizer tokenizer = new BallotTokenizer();
+
+  @Test
+  public void testNextField() {
+    tokenizer.reset("1,,23");
+    assertTrue(tokenizer.nextField());
+    assertEquals(0, tokenizer.getFieldStart());
+    assertEquals(1, tokenizer.getFieldEnd());
+    assertTrue(tokenizer.nextField());
+    assertTrue(tokenizer.isFieldEmpty());
+    assertTrue(tokenizer.nextField());
+    assertEquals(3, tokenizer.getFieldStart());
+    assertEquals(5, tokenizer.getFieldEnd());
+    assertFalse(tokenizer.nextField());
+  }
+
+  @Test
+  public void testEmptyLine() {
+    tokenizer.reset("");
+    assertTrue(tokenizer.nextField());
+    assertTrue(tokenizer.isFieldEmpty());
+    assertFalse(tokenizer.nextField());
+  }
+
+  @Test
+  public void testReadFieldsFromBytes() throws IOException {
+    ByteBuffer bytes = ByteBuffer.wrap("IR\n3,,12, 4\r\n".getBytes(StandardCharsets.US_ASCII));
+    int[] fields = new int[3];
+    tokenizer.reset(bytes, 3, 12);
+    tokenizer.readFields(fields, 0);
+    assertArrayEquals(new int[]{3, 0, 12}, fields);
+  }
+
+  @Test
+  public void testReadFieldsBadCharacter() {
+    tokenizer.reset("1,x,");
+    assertThrows(IOException.class, () -> tokenizer.readFields(new int[3], 0));
+  }
+
+  @Test
+  public void testReadFieldsSpaces() throws IOException {
+    int[] fields = new int[3];
+    tokenizer.reset(" 1 ,  , 12");
+    tokenizer.readFields(fields, 0);
+    assertArrayEquals(new int[]{1, 0, 12}, fields);
+
+    tokenizer.reset("1 2,,");
+    assertThrows(IOException.class, () -> tokenizer.readFields(fields, 0));
+  }
+
+  @Test
+  public void testReadFieldsOverflow() throws IOException {
+    int[] fields = new int[2];
+    tokenizer.reset("2147483647,");
+    tokenizer.readFields(fields, 0);
+    assertEquals(Integer.MAX_VALUE, fields[0]);
+
+    tokenizer.reset("2147483648,");
+    assertThrows(IOException.class, () -> tokenizer.readFields(fields, 0));
+  }
+
+  @Test
+  public void testFieldString() {
+    tokenizer.reset("[Pike,D],Rosen (D)");
+    tokenizer.nextField();
+    assertEquals("Pike", tokenizer.fieldString());
+    tokenizer.nextField();
+    assertEquals("D", tokenizer.fieldString());
+    tokenizer.nextField();
+    assertEquals(15, tokenizer.lastIndexInField('('));
+    assertEquals("Rosen", tokenizer.substring(tokenizer.getFieldStart(), 14));
+    assertEquals(-1, tokenizer.lastIndexInField('['));
+  }
+
+  @Test
+  public void testReadFieldsDoesNotAllocate() throws IOException {
+    StringBuilder contents = new StringBuilder();
+    for (int i = 0; i < 1000; i++) {
+      contents.append("1,,3,2,,5\n");
+    }
+    ByteBuffer bytes = ByteBuffer.wrap(contents.toString().getBytes(StandardCharsets.US_ASCII));
+    int[] fields = new int[6];
+    long total = 0;
+    // read the ballots a few times first, so the measured pass runs compiled code
+    for (int pass = 0; pass < 20; pass++) {
+      total += readAll(bytes, fields);
+    }
+
+    com.sun.management.ThreadMXBean threads =
+        (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+    long thread = Thread.currentThread().getId();
+    long before = threads.getThreadAllocatedBytes(thread);
+    total += readAll(bytes, fields);
+    long allocated = threads.getThreadAllocatedBytes(thread) - before;
+    assertEquals(21 * 11000, total);
+    // a little is allowed for the measurement itself
+    assertTrue(allocated < 1024, "allocated " + allocated + " bytes");
+  }
+
+  /**
+   * Reads every ballot line of a buffer with the tokenizer.
+   *
+   * @param bytes  buffer of ballot lines
+   * @param fields filled with the fields of each ballot
+   * @return sum of every field read
+   * @throws IOException if a field is not a number
+   */
+  private long readAll(ByteBuffer bytes, int[] fields) throws IOException {
+    long sum = 0;
+    int start = 0;
+    for (int i = 0; i < bytes.limit(); i++) {
+      if (bytes.get(i) == '\n') {
+        tokenizer.reset(bytes, start, i);
+        tokenizer.readFields(fields, 0);
+        for (int field : fields) {
+          sum += field;
+        }
+        start = i + 1;
+      }
+    }
+    return sum;
+  }
+}
@@ -0,0 +1,206 @@
+import java.io.BufferedInputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+/**
+ * Reads an election file in the binary ballot format written by BallotFileConverter.
+ * The file starts with the magic number, followed by the type tag, the party and candidate
+ * tables, the number of seats and the number of ballots from the header of the original file.
+ * The ballots follow until the end of the file. Each ballot is the number of candidates marked
+ * on it, then for each of them the gap from the previous marked candidate and its mark.
+ * All numbers are unsigned varints, and strings are a varint length followed by UTF-8 bytes.
+ * The header lines of the text format are rebuilt from the tables, so the elections read the
+ * file the same way as a text file.
+ * BinaryBallotReader.java
+ */
+public class BinaryBallotReader extends BallotReader {
+  /**
+   * Bytes at the start of every binary ballot file.
+   */
+  public static final byte[] MAGIC = {'V', 'S', 'B', 1};
+
+  private static final int BUFFER_SIZE = 1 << 16;
+
+  private final InputStream in;
+  private final byte[] buffer;
+  private int position;
+  private int limit;
+  private final String[] headerLines;
+  private int nextHeaderLine;
+  private int[] lastFields;
+  private int[] lastMarked = new int[16];
+  private int numLastMarked;
+
+  /**
+   * Constructor for BinaryBallotReader.
+   *
+   * @param file the binary election file
+   * @throws IOException if the file cannot be read or is not in the binary format
+   */
+  public BinaryBallotReader(File file) throws IOException {
+    this(new BufferedInputStream(new FileInputStream(file), BUFFER_SIZE));
+  }
+
+  /**
+   * Constructor for BinaryBallotReader.
+   *
+   * @param in stream of the binary election file, starting at the magic number
+   * @throws IOException if the stream cannot be read or is not in the binary format
+   */
+  public BinaryBallotReader(InputStream in) throws IOException {
+    this.in = in;
+    this.buffer = new byte[BUFFER_SIZE];
+    for (byte b : MAGIC) {
+      if (readByte() != b) {
+        throw new IOException("Election file is not in the binary ballot format");
+      }
+    }
+    this.headerLines = readHeader();
+  }
+
+  /**
+   * Reads the header and rebuilds the header lines of the text format from it.
+   *
+   * @return the header lines, starting with the type of election
+   * @throws IOException if the header cannot be read
+   */
+  private String[] readHeader() throws IOException {
+    String type = readString();
+    String[] parties = new String[readVarint()];
+    for (int i = 0; i < parties.length; i++) {
+      parties[i] = readString();
+    }
+    int numCandidates = readVarint();
+    StringBuilder candidates = new StringBuilder();
+    for (int i = 0; i < numCandidates; i++) {
+      String name = readString();
+      String party = parties[readVarint()];
+      if (i > 0) {
+        candidates.append(',');
+      }
+      if ("IR".equals(type)) {
+        candidates.append(name).append(" (").append(party).append(')');
+      } else {
+        candidates.append('[').append(name).append(',').append(party).append(']');
+      }
+    }
+    int numSeats = readVarint();
+    int numBallots = readVarint();
+    if (OpenPartyList.isPartyList(type)) {
+      return new String[]{type, Integer.toString(numCandidates), candidates.toString(),
+          Integer.toString(numSeats), Integer.toString(numBallots)};
+    }
+    return new String[]{type, Integer.toString(numCandidates), candidates.toString(),
+        Integer.toString(numBallots)};
+  }
+
+  @Override
+  public String readLine() throws IOException {
+    if (nextHeaderLine < headerLines.length) {
+      return headerLines[nextHeaderLine++];
+    }
+    return null;
+  }
+
+  @Override
+  protected boolean nextBallot(int[] fields, int ordinal) throws IOException {
+    if (position == limit && !fill()) {
+      return false;
+    }
+    // only the fields marked by the last ballot need clearing, however many candidates there are
+    if (fields == lastFields) {
+      for (int i = 0; i < numLastMarked; i++) {
+        fields[lastMarked[i]] = 0;
+      }
+    } else {
+      Arrays.fill(fields, 0);
+      lastFields = fields;
+    }
+    int numMarked = readVarint();
+    if (numMarked > lastMarked.length) {
+      lastMarked = new int[Math.max(numMarked, lastMarked.length * 2)];
+    }
+    numLastMarked = 0;
+    int candidate = -1;
+    for (int i = 0; i < numMarked; i++) {
+      candidate += readVarint() + 1;
+      int mark = readVarint();
+      if (candidate < fields.length) {
+        fields[candidate] = mark;
+        lastMarked[numLastMarked++] = candidate;
+      }
+    }
+    return true;
+  }
+
+  /**
+   * Reads an unsigned varint, seven bits per byte with the lowest bits first.
+   *
+   * @return the number
+   * @throws IOException if the file ends in the middle of the number
+   */
+  private int readVarint() throws IOException {
+    int value = 0;
+    for (int shift = 0; shift < 32; shift += 7) {
+      int b = readByte();
+      value |= (b & 0x7f) << shift;
+      if ((b & 0x80) == 0) {
+        return value;
+      }
+    }
+    throw new IOException("Varint in the election file is too long");
+  }
+
+  /**
+   * Reads a string written as its length followed by its UTF-8 bytes.
+   *
+   * @return the string
+   * @throws IOException if the file ends in the middle of the string
+   */
+  private String readString() throws IOException {
+    byte[] bytes = new byte[readVarint()];
+    for (int i = 0; i < bytes.length; i++) {
+      bytes[i] = (byte) readByte();
+    }
+    return new String(bytes, StandardCharsets.UTF_8);
+  }
+
+  /**
+   * Reads the next byte of the file.
+   *
+   * @return the byte, from 0 to 255
+   * @throws IOException if the file has ended
+   */
+  private int readByte() throws IOException {
+    if (position == limit && !fill()) {
+      throw new EOFException("Election file ends in the middle of a ballot");
+    }
+    return buffer[position++] & 0xff;
+  }
+
+  /**
+   * Reads more of the file into the buffer.
+   *
+   * @return false if the file has ended
+   * @throws IOException if the file cannot be read
+   */
+  private boolean fill() throws IOException {
+    int read = in.read(buffer, 0, buffer.length);
+    while (read == 0) {
+      read = in.read(buffer, 0, buffer.length);
+    }
+    position = 0;
+    limit = Math.max(read, 0);
+    return read > 0;
+  }
+
+  @Override
+  public void close() throws IOException {
+    in.close();
+  }
+}
@@ -0,0 +1,123 @@
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Tests the methods for the BinaryBallotReader class.
+ * BinaryBallotReaderTest.java
+ */
+public class BinaryBallotReaderTest {
+  private File file;
+
+  /**
+   * Write a short instant runoff file in the binary format for testing.
+   *
+   * @throws IOException if the file cannot be written
+   */
+  @BeforeEach
+  public void setUp() throws IOException {
+    file = File.createTempFile("election", ".vsb");
+    try (OutputStream out = new FileOutputStream(file)) {
+      out.write(BinaryBallotReader.MAGIC);
+      out.write(new byte[]{2, 'I', 'R'});
+      // parties D and R, then candidates Rosen (D), Kleinberg (R) and Chou (D)
+      out.write(new byte[]{2, 1, 'D', 1, 'R'});
+      out.write(new byte[]{3, 5, 'R', 'o', 's', 'e', 'n', 0});
+      out.write(new byte[]{9, 'K', 'l', 'e', 'i', 'n', 'b', 'e', 'r', 'g', 1});
+      out.write(new byte[]{4, 'C', 'h', 'o', 'u', 0});
+      // no seats and 3 ballots: 1,3,2 and ,1, and 200,,
+      out.write(new byte[]{0, 3});
+      out.write(new byte[]{3, 0, 1, 0, 3, 0, 2});
+      out.write(new byte[]{1, 1, 1});
+      out.write(new byte[]{1, 0, (byte) 0xc8, 1});
+    }
+  }
+
+  @AfterEach
+  public void tearDown() {
+    file.delete();
+  }
+
+  @Test
+  public void testReadLine() throws IOException {
+    try (BinaryBallotReader reader = new BinaryBallotReader(file)) {
+      assertEquals("IR", reader.readLine());
+      assertEquals("3", reader.readLine());
+      assertEquals("Rosen (D),Kleinberg (R),Chou (D)", reader.readLine());
+      assertEquals("3", reader.readLine());
+    }
+  }
+
+  @Test
+  public void testReadBallots() throws IOException {
+    try (BinaryBallotReader reader = new BinaryBallotReader(file)) {
+      for (int i = 0; i < 4; i++) {
+        reader.readLine();
+      }
+      int[][] read = new int[3][];
+      assertEquals(3, reader.readBallots(10, 3, (ordinal, fields) -> {
+        read[ordinal] = fields.clone();
+      }));
+      assertArrayEquals(new int[]{1, 3, 2}, read[0]);
+      assertArrayEquals(new int[]{0, 1, 0}, read[1]);
+      assertArrayEquals(new int[]{200, 0, 0}, read[2]);
+      assertNull(reader.readLine());
+    }
+  }
+
+  @Test
+  public void testRunElection() throws IOException {
+    ElectionManager.TESTINGMODE = false;
+    try (BallotReader reader = BallotReader.open(file)) {
+      assertTrue(reader instanceof BinaryBallotReader);
+      reader.readLine();
+      InstantRunoff ir = new InstantRunoff(reader);
+      ir.prepareData();
+      assertEquals(3, ir.getTotalVotes());
+      // the two ballots ranking a single candidate are invalid
+      assertEquals(2, ir.getNumInvalidBallots());
+      assertEquals(1, ir.getCandidateList().get(0).getNumVotes());
+      assertEquals(0, ir.getCandidateList().get(1).getNumVotes());
+    }
+  }
+
+  @Test
+  public void testOpenText() throws IOException {
+    Files.write(file.toPath(), "PO\n0\n\n0\n".getBytes(StandardCharsets.UTF_8));
+    try (BallotReader reader = BallotReader.open(file)) {
+      assertTrue(reader instanceof MappedBallotReader);
+      assertEquals("PO", reader.readLine());
+    }
+  }
+
+  @Test
+  public void testNotBinary() {
+    assertThrows(IOException.class, () -> new BinaryBallotReader(
+        new ByteArrayInputStream("IR\n".getBytes(StandardCharsets.UTF_8))));
+  }
+
+  @Test
+  public void testBallotCutOff() throws IOException {
+    byte[] bytes = Files.readAllBytes(file.toPath());
+    BinaryBallotReader reader = new BinaryBallotReader(
+        new ByteArrayInputStream(bytes, 0, bytes.length - 1));
+    for (int i = 0; i < 4; i++) {
+      reader.readLine();
+    }
+    assertThrows(IOException.class, () -> reader.readBallots(10, 3, (ordinal, fields) -> {
+    }));
+  }
+}
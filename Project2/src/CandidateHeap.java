@@ -0,0 +1,207 @@
+import java.util.Arrays;
+
+/**
+ * An indexed binary min-heap of the candidates still in an election, keyed on their vote totals.
+ * The position of each candidate in the heap is tracked, so a candidate's total can be changed,
+ * or the candidate removed, in O(log n) time.
+ * CandidateHeap.java
+ */
+public class CandidateHeap {
+  private final int[] heap;
+  private final int[] position;
+  private final int[] votes;
+  private final int[] stack;
+  private int size;
+
+  /**
+   * Constructor for CandidateHeap.
+   *
+   * @param numCandidates number of candidates in the election
+   */
+  public CandidateHeap(int numCandidates) {
+    this.heap = new int[numCandidates];
+    this.position = new int[numCandidates];
+    this.votes = new int[numCandidates];
+    this.stack = new int[numCandidates];
+    Arrays.fill(position, -1);
+  }
+
+  /**
+   * Adds a candidate to the heap.
+   *
+   * @param candidate index of the candidate
+   * @param numVotes  vote total of the candidate
+   */
+  public void insert(int candidate, int numVotes) {
+    votes[candidate] = numVotes;
+    heap[size] = candidate;
+    position[candidate] = size;
+    size++;
+    siftUp(size - 1);
+  }
+
+  /**
+   * Changes the vote total of a candidate in the heap.
+   *
+   * @param candidate index of the candidate
+   * @param numVotes  new vote total of the candidate
+   */
+  public void update(int candidate, int numVotes) {
+    int oldVotes = votes[candidate];
+    votes[candidate] = numVotes;
+    if (numVotes < oldVotes) {
+      siftUp(position[candidate]);
+    } else {
+      siftDown(position[candidate]);
+    }
+  }
+
+  /**
+   * Removes a candidate from the heap.
+   *
+   * @param candidate index of the candidate
+   */
+  public void remove(int candidate) {
+    int pos = position[candidate];
+    if (pos == -1) {
+      return;
+    }
+    size--;
+    position[candidate] = -1;
+    if (pos == size) {
+      return;
+    }
+    int last = heap[size];
+    heap[pos] = last;
+    position[last] = pos;
+    siftDown(pos);
+    siftUp(position[last]);
+  }
+
+  /**
+   * Checks whether a candidate is in the heap.
+   *
+   * @param candidate index of the candidate
+   * @return true if the candidate has not been removed
+   */
+  public boolean contains(int candidate) {
+    return position[candidate] != -1;
+  }
+
+  /**
+   * Gets the number of candidates in the heap.
+   *
+   * @return number of candidates
+   */
+  public int size() {
+    return size;
+  }
+
+  /**
+   * Gets the candidate with the lowest vote total in the heap.
+   *
+   * @return index of the candidate
+   */
+  public int peekMin() {
+    return heap[0];
+  }
+
+  /**
+   * Removes the candidate with the lowest vote total from the heap.
+   *
+   * @return index of the candidate
+   */
+  public int pollMin() {
+    int candidate = heap[0];
+    remove(candidate);
+    return candidate;
+  }
+
+  /**
+   * Gets the vote total of a candidate as currently stored in the heap.
+   *
+   * @param candidate index of the candidate
+   * @return vote total of the candidate
+   */
+  public int getVotes(int candidate) {
+    return votes[candidate];
+  }
+
+  /**
+   * Gets the lowest vote total in the heap.
+   *
+   * @return the lowest vote total
+   */
+  public int getMinVotes() {
+    return votes[heap[0]];
+  }
+
+  /**
+   * Finds every candidate tied for the lowest vote total. Only the part of the heap holding
+   * the lowest total is visited, so this takes time proportional to the number of tied
+   * candidates.
+   *
+   * @param tied filled with the indices of the tied candidates, in increasing order
+   * @return number of tied candidates
+   */
+  public int findMinTies(int[] tied) {
+    int minVotes = getMinVotes();
+    int numTied = 0;
+    int top = 0;
+    stack[top++] = 0;
+    while (top > 0) {
+      int pos = stack[--top];
+      tied[numTied++] = heap[pos];
+      for (int child = 2 * pos + 1; child <= 2 * pos + 2 && child < size; child++) {
+        if (votes[heap[child]] == minVotes) {
+          stack[top++] = child;
+        }
+      }
+    }
+    Arrays.sort(tied, 0, numTied);
+    return numTied;
+  }
+
+  /**
+   * Moves the candidate at a heap position up until its parent has no more votes than it.
+   *
+   * @param pos position in the heap
+   */
+  private void siftUp(int pos) {
+    int candidate = heap[pos];
+    while (pos > 0) {
+      int parent = (pos - 1) / 2;
+      if (votes[heap[parent]] <= votes[candidate]) {
+        break;
+      }
+      heap[pos] = heap[parent];
+      position[heap[pos]] = pos;
+      pos = parent;
+    }
+    heap[pos] = candidate;
+    position[candidate] = pos;
+  }
+
+  /**
+   * Moves the candidate at a heap position down until its children have no fewer votes than it.
+   *
+   * @param pos position in the heap
+   */
+  private void siftDown(int pos) {
+    int candidate = heap[pos];
+    while (2 * pos + 1 < size) {
+      int child = 2 * pos + 1;
+      if (child + 1 < size && votes[heap[child + 1]] < votes[heap[child]]) {
+        child++;
+      }
+      if (votes[heap[child]] >= votes[candidate]) {
+        break;
+      }
+      heap[pos] = heap[child];
+      position[heap[pos]] = pos;
+      pos = child;
+    }
+    heap[pos] = candidate;
+    position[candidate] = pos;
+  }
+}
@@ -0,0 +1,81 @@
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Tests the methods for the CandidateHeap class.
+ * CandidateHeapTest.java
+ */
+public class CandidateHeapTest {
+  private CandidateHeap heap;
+
+  /**
+   * Set up a heap of five candidates for testing.
+   */
+  @BeforeEach
+  public void setUp() {
+    heap = new CandidateHeap(5);
+    heap.insert(0, 2);
+    heap.insert(1, 2);
+    heap.insert(2, 1);
+    heap.insert(3, 2);
+    heap.insert(4, 1);
+  }
+
+  @Test
+  public void testInsert() {
+    assertEquals(5, heap.size());
+    assertEquals(1, heap.getMinVotes());
+  }
+
+  @Test
+  public void testFindMinTies() {
+    int[] tied = new int[5];
+    assertEquals(2, heap.findMinTies(tied));
+    assertEquals(2, tied[0]);
+    assertEquals(4, tied[1]);
+  }
+
+  @Test
+  public void testRemove() {
+    heap.remove(4);
+    heap.remove(2);
+    assertFalse(heap.contains(2));
+    assertTrue(heap.contains(0));
+    assertEquals(3, heap.size());
+    int[] tied = new int[5];
+    assertEquals(3, heap.findMinTies(tied));
+    assertEquals(0, tied[0]);
+    assertEquals(1, tied[1]);
+    assertEquals(3, tied[2]);
+  }
+
+  @Test
+  public void testUpdate() {
+    heap.update(2, 5);
+    heap.update(0, 0);
+    int[] tied = new int[5];
+    assertEquals(0, heap.getMinVotes());
+    assertEquals(1, heap.findMinTies(tied));
+    assertEquals(0, tied[0]);
+    heap.remove(0);
+    assertEquals(1, heap.getMinVotes());
+    assertEquals(1, heap.findMinTies(tied));
+    assertEquals(4, tied[0]);
+  }
+
+  @Test
+  public void testPollMin() {
+    int first = heap.peekMin();
+    assertEquals(first, heap.pollMin());
+    int second = heap.pollMin();
+    assertEquals(1, heap.getVotes(first));
+    assertEquals(1, heap.getVotes(second));
+    assertFalse(heap.contains(first));
+    assertEquals(2, heap.getVotes(heap.pollMin()));
+    assertEquals(2, heap.size());
+  }
+}
@@ -0,0 +1,326 @@
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
+
+/**
+ * Reads an election file from a channel that can only be read once from start to end, such as
+ * standard input or a named pipe. The bytes are read into a large direct buffer, and the fields
+ * of each ballot are found in the buffer with a BallotTokenizer, so reading a ballot does not
+ * make any strings. The buffer grows if a line does not fit in it.
+ * Ballots counted into chunks go through a pipeline, so reading the channel, parsing the
+ * ballots and collecting the counted chunks all overlap.
+ * ChannelBallotReader.java
+ */
+public class ChannelBallotReader extends BallotReader {
+  private static final int BUFFER_SIZE = 1 << 20;
+
+  // a batch of ballots ends after this many lines or once it is at least this many bytes long
+  private static final int BATCH_LINES = 1 << 15;
+  private static final int BATCH_BYTES = 1 << 20;
+
+  private final ReadableByteChannel channel;
+  private final BallotTokenizer tokenizer;
+  private ByteBuffer buffer;
+  private int position;
+  private boolean endOfStream;
+
+  /**
+   * Constructor for ChannelBallotReader.
+   *
+   * @param channel channel of the election file
+   */
+  public ChannelBallotReader(ReadableByteChannel channel) {
+    this(channel, ByteBuffer.allocate(0));
+  }
+
+  /**
+   * Constructor for ChannelBallotReader that starts with bytes already read from the channel.
+   *
+   * @param channel channel of the election file
+   * @param start   bytes already read from the start of the channel, between its position and
+   *                its limit
+   */
+  public ChannelBallotReader(ReadableByteChannel channel, ByteBuffer start) {
+    this(channel, start, BUFFER_SIZE);
+  }
+
+  /**
+   * Constructor for ChannelBallotReader with a chosen buffer size.
+   *
+   * @param channel    channel of the election file
+   * @param start      bytes already read from the start of the channel, between its position
+   *                   and its limit
+   * @param bufferSize number of bytes read from the channel at once
+   */
+  public ChannelBallotReader(ReadableByteChannel channel, ByteBuffer start, int bufferSize) {
+    this.channel = channel;
+    this.tokenizer = new BallotTokenizer();
+    this.buffer = ByteBuffer.allocateDirect(Math.max(bufferSize, start.remaining()));
+    buffer.put(start);
+    buffer.flip();
+  }
+
+  @Override
+  public String readLine() throws IOException {
+    int end = findLineEnd();
+    if (end == -1) {
+      return null;
+    }
+    byte[] bytes = new byte[trimLineEnd(end) - position];
+    buffer.get(position, bytes);
+    position = end + 1;
+    return new String(bytes, StandardCharsets.UTF_8);
+  }
+
+  @Override
+  protected boolean nextBallot(int[] fields, int ordinal) throws IOException {
+    int end = findLineEnd();
+    if (end == -1) {
+      return false;
+    }
+    tokenizer.reset(buffer, position, end);
+    tokenizer.readFields(fields, ordinal);
+    position = end + 1;
+    return true;
+  }
+
+  /**
+   * Reads ballots until enough have been read or the channel ends, counting them into chunks
+   * with a pipeline of three stages. A reader thread copies whole lines from the channel into
+   * batches of bytes. Each batch is parsed and counted into its own chunk on a ForkJoin pool.
+   * The calling thread gives the counted chunks to the consumer in the order the batches were
+   * read. The batches waiting to be collected are held in a bounded queue, so the reader thread
+   * stops when parsing falls behind instead of holding the whole file in memory.
+   *
+   * @param maxBallots largest number of ballots to read
+   * @param numFields  number of fields of a ballot, usually the number of candidates
+   * @param newChunk   makes an empty chunk for each batch of ballots
+   * @param counted    given each chunk once its ballots have been counted
+   * @param <T>        type of chunk
+   * @throws IOException if the channel cannot be read or a field is not a number
+   */
+  @Override
+  public <T extends BallotChunk> void countBallotChunks(int maxBallots, int numFields,
+      Supplier<T> newChunk, Consumer<T> counted) throws IOException {
+    int queueSize = Math.max(2, 2 * ForkJoinPool.getCommonPoolParallelism());
+    BlockingQueue<Future<T>> queue = new ArrayBlockingQueue<>(queueSize);
+    CompletableFuture<T> end = new CompletableFuture<>();
+    AtomicBoolean cancelled = new AtomicBoolean();
+    // anything thrown on the reader thread is kept here, and the end of the batches is queued
+    // whatever happens, so the calling thread never waits for a batch that will not come
+    AtomicReference<Throwable> failure = new AtomicReference<>();
+    Thread readerThread = new Thread(() -> {
+      try {
+        readBatches(maxBallots, numFields, newChunk, queue, cancelled);
+      } catch (Throwable e) {
+        failure.set(e);
+      } finally {
+        putBatch(queue, end, cancelled);
+      }
+    }, "ballot-reader");
+    readerThread.setDaemon(true);
+    readerThread.start();
+
+    try {
+      for (Future<T> batch = queue.take(); batch != end; batch = queue.take()) {
+        counted.accept(batch.get());
+      }
+      readerThread.join();
+      if (failure.get() != null) {
+        throw asIOException(failure.get());
+      }
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new InterruptedIOException("Interrupted while reading ballots");
+    } catch (ExecutionException e) {
+      throw asIOException(e.getCause());
+    } finally {
+      if (readerThread.isAlive()) {
+        // the ballots are abandoned after an error, so the reader thread stops at its next batch
+        cancelled.set(true);
+        queue.clear();
+      }
+    }
+  }
+
+  /**
+   * Turns a failure of the reader thread or of a batch into the exception to throw from
+   * countBallotChunks. Errors are thrown as they are.
+   *
+   * @param cause what was thrown
+   * @return the IOException to throw
+   */
+  private static IOException asIOException(Throwable cause) {
+    if (cause instanceof Error) {
+      throw (Error) cause;
+    }
+    if (cause instanceof UncheckedIOException) {
+      cause = cause.getCause();
+    }
+    if (cause instanceof IOException) {
+      return (IOException) cause;
+    }
+    return new IOException(cause);
+  }
+
+  /**
+   * Copies ballot lines from the channel into batches, and starts parsing each batch into its
+   * own chunk on the ForkJoin pool. This runs on the reader thread.
+   *
+   * @param maxBallots largest number of ballots to read
+   * @param numFields  number of fields of a ballot
+   * @param newChunk   makes an empty chunk for each batch of ballots
+   * @param queue      queue the result of each batch is put in, in the order they were read
+   * @param cancelled  set when the batches are no longer wanted
+   * @param <T>        type of chunk
+   * @throws IOException if the channel cannot be read
+   */
+  private <T extends BallotChunk> void readBatches(int maxBallots, int numFields,
+      Supplier<T> newChunk, BlockingQueue<Future<T>> queue, AtomicBoolean cancelled)
+      throws IOException {
+    int ordinal = 0;
+    while (ordinal < maxBallots && !cancelled.get()) {
+      byte[] batch = new byte[BATCH_BYTES];
+      int length = 0;
+      int numLines = 0;
+      while (numLines < BATCH_LINES && ordinal + numLines < maxBallots
+          && length < BATCH_BYTES) {
+        int lineEnd = findLineEnd();
+        if (lineEnd == -1) {
+          break;
+        }
+        int lineLength = lineEnd - position;
+        if (length + lineLength + 1 > batch.length) {
+          batch = Arrays.copyOf(batch, Math.max(batch.length * 2, length + lineLength + 1));
+        }
+        buffer.get(position, batch, length, lineLength);
+        length += lineLength;
+        batch[length++] = '\n';
+        position = lineEnd + 1;
+        numLines++;
+      }
+      if (numLines == 0) {
+        break;
+      }
+      ByteBuffer bytes = ByteBuffer.wrap(batch, 0, length);
+      int firstOrdinal = ordinal;
+      int batchLines = numLines;
+      putBatch(queue, CompletableFuture.supplyAsync(() -> {
+        T chunk = newChunk.get();
+        try {
+          chunk.countLines(bytes, firstOrdinal, batchLines, numFields);
+        } catch (IOException e) {
+          throw new UncheckedIOException(e);
+        }
+        return chunk;
+      }, ForkJoinPool.commonPool()), cancelled);
+      ordinal += numLines;
+    }
+  }
+
+  /**
+   * Puts a batch in the queue, waiting while the queue is full, unless the batches are no
+   * longer wanted.
+   *
+   * @param queue     the queue
+   * @param batch     result of the batch
+   * @param cancelled set when the batches are no longer wanted
+   * @param <T>       type of chunk
+   */
+  private static <T> void putBatch(BlockingQueue<Future<T>> queue, Future<T> batch,
+      AtomicBoolean cancelled) {
+    boolean added = false;
+    try {
+      while (!added && !cancelled.get()) {
+        added = queue.offer(batch, 100, TimeUnit.MILLISECONDS);
+      }
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    }
+  }
+
+  /**
+   * Finds the end of the line starting at the current position, reading more of the channel
+   * if the line runs past the end of the buffer.
+   *
+   * @return position in the buffer of the newline ending the line, or of the end of the stream
+   *     if the last line has no newline; -1 if there are no more lines
+   * @throws IOException if the channel cannot be read
+   */
+  private int findLineEnd() throws IOException {
+    int from = position;
+    while (true) {
+      int limit = buffer.limit();
+      while (from < limit && buffer.get(from) != '\n') {
+        from++;
+      }
+      if (from < limit) {
+        return from;
+      }
+      if (endOfStream) {
+        return position < limit ? limit : -1;
+      }
+      from -= position;
+      fill();
+    }
+  }
+
+  /**
+   * Moves the unread bytes to the start of the buffer and reads more of the channel after
+   * them, growing the buffer if the unread bytes already fill it.
+   *
+   * @throws IOException if the channel cannot be read
+   */
+  private void fill() throws IOException {
+    buffer.position(position);
+    buffer.compact();
+    if (!buffer.hasRemaining()) {
+      ByteBuffer larger = ByteBuffer.allocateDirect(buffer.capacity() * 2);
+      buffer.flip();
+      larger.put(buffer);
+      buffer = larger;
+    }
+    int read = channel.read(buffer);
+    while (read == 0) {
+      read = channel.read(buffer);
+    }
+    if (read == -1) {
+      endOfStream = true;
+    }
+    buffer.flip();
+    position = 0;
+  }
+
+  /**
+   * Leaves a carriage return off the end of the line at the current position.
+   *
+   * @param end position in the buffer where the line ends
+   * @return position in the buffer after the last character of the line
+   */
+  private int trimLineEnd(int end) {
+    if (end > position && buffer.get(end - 1) == '\r') {
+      return end - 1;
+    }
+    return end;
+  }
+
+  @Override
+  public void close() throws IOException {
+    channel.close();
+  }
+}
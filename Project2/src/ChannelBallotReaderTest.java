@@ -0,0 +1,196 @@
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Tests the methods for the ChannelBallotReader class.
+ * ChannelBallotReaderTest.java
+ */
+public class ChannelBallotReaderTest {
+  private static final String ELECTION =
+      "IR\r\n3\nRosen (D),Kleinberg (R),Chou (I)\n1,3,2\n,1,\r\n12,,";
+
+  /**
+   * Makes a channel reading a string.
+   *
+   * @param contents the string
+   * @return the channel
+   */
+  private static ReadableByteChannel channelOf(String contents) {
+    return Channels.newChannel(
+        new ByteArrayInputStream(contents.getBytes(StandardCharsets.UTF_8)));
+  }
+
+  @Test
+  public void testReadLine() throws IOException {
+    try (ChannelBallotReader reader = new ChannelBallotReader(channelOf(ELECTION))) {
+      assertEquals("IR", reader.readLine());
+      assertEquals("3", reader.readLine());
+      assertEquals("Rosen (D),Kleinberg (R),Chou (I)", reader.readLine());
+    }
+  }
+
+  @Test
+  public void testReadBallots() throws IOException {
+    try (ChannelBallotReader reader = new ChannelBallotReader(channelOf(ELECTION))) {
+      for (int i = 0; i < 3; i++) {
+        reader.readLine();
+      }
+      int[][] read = new int[3][];
+      assertEquals(3, reader.readBallots(10, 3, (ordinal, fields) -> {
+        read[ordinal] = fields.clone();
+      }));
+      assertArrayEquals(new int[]{1, 3, 2}, read[0]);
+      assertArrayEquals(new int[]{0, 1, 0}, read[1]);
+      assertArrayEquals(new int[]{12, 0, 0}, read[2]);
+      assertNull(reader.readLine());
+    }
+  }
+
+  @Test
+  public void testSmallBuffer() throws IOException {
+    // the buffer is shorter than the candidate line, so it has to grow, and lines keep
+    // running past the end of the buffer
+    ByteBuffer start = ByteBuffer.wrap("IR".getBytes(StandardCharsets.UTF_8));
+    try (ChannelBallotReader reader = new ChannelBallotReader(
+        channelOf(ELECTION.substring(2)), start, 8)) {
+      assertEquals("IR", reader.readLine());
+      assertEquals("3", reader.readLine());
+      assertEquals("Rosen (D),Kleinberg (R),Chou (I)", reader.readLine());
+      int[] sums = new int[3];
+      assertEquals(3, reader.readBallots(10, 3, (ordinal, fields) -> {
+        sums[ordinal] = fields[0] + fields[1] + fields[2];
+      }));
+      assertArrayEquals(new int[]{6, 1, 12}, sums);
+    }
+  }
+
+  @Test
+  public void testReadBallotChunks() throws IOException {
+    StringBuilder contents = new StringBuilder("PO\n");
+    for (int i = 0; i < 100000; i++) {
+      contents.append(i % 3 == 0 ? "1,," : (i % 3 == 1 ? ",1," : ",,1")).append('\n');
+    }
+    try (ChannelBallotReader reader = new ChannelBallotReader(channelOf(contents.toString()))) {
+      reader.readLine();
+      List<OrdinalChunk> chunks = reader.readBallotChunks(99999, 3, OrdinalChunk::new);
+      assertTrue(chunks.size() > 1);
+      int nextOrdinal = 0;
+      int[] votes = new int[3];
+      for (OrdinalChunk chunk : chunks) {
+        // every chunk continues where the one before it stopped
+        assertEquals(nextOrdinal, chunk.firstOrdinal);
+        nextOrdinal += chunk.numBallots;
+        for (int i = 0; i < 3; i++) {
+          votes[i] += chunk.getTally(i);
+        }
+      }
+      assertEquals(99999, nextOrdinal);
+      assertArrayEquals(new int[]{33333, 33333, 33333}, votes);
+      assertEquals("1,,", reader.readLine());
+      assertNull(reader.readLine());
+    }
+  }
+
+  @Test
+  public void testReadBallotChunksBadField() throws IOException {
+    StringBuilder contents = new StringBuilder("PO\n");
+    for (int i = 0; i < 100000; i++) {
+      contents.append(i == 70000 ? "1,x," : "1,,").append('\n');
+    }
+    try (ChannelBallotReader reader = new ChannelBallotReader(channelOf(contents.toString()))) {
+      reader.readLine();
+      assertThrows(IOException.class,
+          () -> reader.readBallotChunks(Integer.MAX_VALUE, 3, OrdinalChunk::new));
+    }
+  }
+
+  @Test
+  public void testReadBallotChunksChannelFails() throws IOException {
+    StringBuilder contents = new StringBuilder("PO\n");
+    for (int i = 0; i < 100000; i++) {
+      contents.append("1,,\n");
+    }
+    ReadableByteChannel source = channelOf(contents.toString());
+    // gives the bytes a little at a time, then fails with an unchecked exception part way in
+    ReadableByteChannel failing = new ReadableByteChannel() {
+      private int numRead;
+
+      @Override
+      public int read(ByteBuffer dst) throws IOException {
+        if (numRead > 200000) {
+          throw new IllegalStateException("Channel broke");
+        }
+        ByteBuffer part = dst.duplicate();
+        part.limit(Math.min(dst.limit(), dst.position() + 65536));
+        int read = source.read(part);
+        if (read > 0) {
+          dst.position(dst.position() + read);
+          numRead += read;
+        }
+        return read;
+      }
+
+      @Override
+      public boolean isOpen() {
+        return source.isOpen();
+      }
+
+      @Override
+      public void close() throws IOException {
+        source.close();
+      }
+    };
+    try (ChannelBallotReader reader = new ChannelBallotReader(failing)) {
+      reader.readLine();
+      // the failure ends the pipeline instead of leaving this waiting for more batches
+      assertThrows(IOException.class,
+          () -> reader.readBallotChunks(Integer.MAX_VALUE, 3, OrdinalChunk::new));
+    }
+  }
+
+  @Test
+  public void testEmptyChannel() throws IOException {
+    try (ChannelBallotReader reader = new ChannelBallotReader(channelOf(""))) {
+      assertNull(reader.readLine());
+      assertEquals(0, reader.readBallots(10, 3, (ordinal, fields) -> { }));
+    }
+  }
+
+  /**
+   * Counts the votes of a chunk and checks that its ballots come in order.
+   */
+  private static class OrdinalChunk extends BallotChunk {
+    private int firstOrdinal = -1;
+    private int numBallots;
+
+    OrdinalChunk() {
+      super(3);
+    }
+
+    @Override
+    public void countBallot(int ordinal, int[] fields) {
+      if (firstOrdinal == -1) {
+        firstOrdinal = ordinal;
+      }
+      assertEquals(firstOrdinal + numBallots, ordinal);
+      numBallots++;
+      for (int i = 0; i < fields.length; i++) {
+        if (fields[i] == 1) {
+          addToTally(i);
+        }
+      }
+    }
+  }
+}
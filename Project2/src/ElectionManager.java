@@ -14,27 +14,51 @@ public class ElectionManager {
   public static BufferedWriter auditFileWriter;
   public static BufferedWriter mediaFileWriter;
   public static boolean TESTINGMODE = false; // setting true disables invalidation of ballots; used for testing
+  public static boolean TRIEMODE = false; // setting true counts instant runoff ballots with a preference trie
+  public static boolean DETAILEDAUDIT = false; // setting true also writes each candidate and moved ballot
+  public static boolean BULKEXCLUSION = false; // setting true eliminates every hopeless candidate at once
+  public static boolean STDINMODE = false; // setting true reads one election file from standard input
 
   /**
    * Main method that will be initially run.
    *
-   * @param args arguments passed in will be ignored
+   * @param args "test" disables invalidation of ballots, "trie" counts instant runoff ballots
+   *     with a preference trie, "detailed" writes a detailed audit file, "bulk" eliminates
+   *     several instant runoff candidates per round when they cannot win, "stdin" reads the
+   *     election file from standard input instead of asking for file names; other arguments are
+   *     ignored
    */
   public static void main(String[] args) {
-    if (args.length > 0 && args[0] != null && args[0].equals("test")) {
-      TESTINGMODE = true;
-    } else {
-      TESTINGMODE = false;
+    TESTINGMODE = false;
+    TRIEMODE = false;
+    DETAILEDAUDIT = false;
+    BULKEXCLUSION = false;
+    STDINMODE = false;
+    for (String arg : args) {
+      if ("test".equals(arg)) {
+        TESTINGMODE = true;
+      } else if ("trie".equals(arg)) {
+        TRIEMODE = true;
+      } else if ("detailed".equals(arg)) {
+        DETAILEDAUDIT = true;
+      } else if ("bulk".equals(arg)) {
+        BULKEXCLUSION = true;
+      } else if ("stdin".equals(arg)) {
+        STDINMODE = true;
+      }
     }
     System.out.println("*********** Voting System 1.1 Team #18 ***********");
-    Scanner sc = new Scanner(System.in);
-    System.out.println("To input multiple files, use format file1|file2|...|fileN");
-    System.out.println("Please enter election file name(s):");
-    String electionFileInput = sc.nextLine();
-    System.out.println();
-
-    // Split file names by | and put into list
-    String[] electionFileSplit = electionFileInput.split("\\|");
+    String[] electionFileSplit = new String[0];
+    if (!STDINMODE) {
+      Scanner sc = new Scanner(System.in);
+      System.out.println("To input multiple files, use format file1|file2|...|fileN");
+      System.out.println("Please enter election file name(s):");
+      String electionFileInput = sc.nextLine();
+      System.out.println();
+
+      // Split file names by | and put into list
+      electionFileSplit = electionFileInput.split("\\|");
+    }
     File[] electionFileList = new File[electionFileSplit.length];
 
     String auditFileName = null;
@@ -63,6 +87,16 @@ public class ElectionManager {
       electionFileList[i] = new File(electionFileSplit[i]);
     }
 
+    // Run election for the election file piped to standard input
+    if (STDINMODE) {
+      System.out.println("Running election file from standard input.");
+      try {
+        runElection(BallotReader.open(new FileInputStream(FileDescriptor.in).getChannel()));
+      } catch (IOException e) {
+        e.printStackTrace();
+      }
+    }
+
     // Run election for each election file passed in
     for (int i = 0; i < electionFileList.length; i++) {
       // Check to see if the election file was found. If not, skip it
@@ -99,17 +133,35 @@ public class ElectionManager {
    * @param electionFile file object for the election file
    */
   private static void runElectionFile(File electionFile) {
-    BufferedReader electionReader = null;
+    BallotReader electionReader;
+    try {
+      // Open election file for reading, in the text or binary format
+      electionReader = BallotReader.open(electionFile);
+    } catch (IOException e) {
+      e.printStackTrace();
+      System.out.println("None.");
+      return;
+    }
+    runElection(electionReader);
+  }
+
+  /**
+   * Runs the election read from a BallotReader, then closes the reader.
+   *
+   * @param electionReader reader positioned at the start of the election file
+   */
+  private static void runElection(BallotReader electionReader) {
     String votingMethod = "";
 
     try {
-      // Open election file for reading
-      electionReader = new BufferedReader(new FileReader(electionFile));
       // Read first line of file
       votingMethod = electionReader.readLine();
     } catch (IOException e) {
       e.printStackTrace();
     }
+    if (votingMethod == null) {
+      votingMethod = "";
+    }
 
     // Check first line of file for voting method
     Election votingCounter;
@@ -124,24 +176,51 @@ public class ElectionManager {
             + "Running Open Party List..." + System.lineSeparator());
         votingCounter = new OpenPartyList(electionReader);
         break;
+      case "DHONDT":
+        System.out.println("Voting Method: Open Party List (D'Hondt)" + System.lineSeparator()
+            + "Running Open Party List..." + System.lineSeparator());
+        votingCounter = new OpenPartyList(electionReader, OpenPartyList.SeatMethod.DHONDT);
+        break;
+      case "SAINTELAGUE":
+        System.out.println("Voting Method: Open Party List (Sainte-Lague)" + System.lineSeparator()
+            + "Running Open Party List..." + System.lineSeparator());
+        votingCounter = new OpenPartyList(electionReader, OpenPartyList.SeatMethod.SAINTE_LAGUE);
+        break;
       case "PO":
         System.out.println("Voting Method: Popularity Only" + System.lineSeparator());
         votingCounter = new PopularityOnly(electionReader);
         break;
       default:
         System.out.println("None.");
+        try {
+          electionReader.close();
+        } catch (IOException e) {
+          e.printStackTrace();
+        }
         return;
     }
 
-    // Run prepare data method for election
+    // Run prepare data method for election, skipping the election if the file cannot be read
     try {
       votingCounter.prepareData();
     } catch (IOException e) {
       e.printStackTrace();
+      System.out.println("The election could not be run." + System.lineSeparator());
+      try {
+        electionReader.close();
+      } catch (IOException closeException) {
+        closeException.printStackTrace();
+      }
+      return;
     }
 
     // Run election and get the winners
     ArrayList<Candidate> winners = votingCounter.runElection();
+    try {
+      electionReader.close();
+    } catch (IOException e) {
+      e.printStackTrace();
+    }
 
     // Print information about election to the screen
     System.out.print("Winner(s) of election: ");
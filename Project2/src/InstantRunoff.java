@@ -1,6 +1,8 @@
 import java.io.BufferedReader;
 import java.io.IOException;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
 
 /**
  * Represents the instant runoff election type.
@@ -9,15 +11,32 @@ import java.util.ArrayList;
  * @author Thomas Haupert
  */
 public class InstantRunoff extends Election {
-  private BufferedReader file;
+  private BallotReader file;
   private ArrayList<Candidate> candidateList;
   private Candidate elected;
+  private BallotStore ballots;
+  private BitSet eliminated;
+  private CandidateHeap remaining;
+  // filled with the candidates tied for the fewest votes each round
+  private int[] tied;
+  // filled with the candidates with the fewest votes, in order, when looking for hopeless ones
+  private int[] lowest;
+  private int leader;
   private int majority;
   private int runoffVotes;
   private int numInvalidBallots;
 
 
   public InstantRunoff(BufferedReader file) {
+    this(new TextBallotReader(file));
+  }
+
+  /**
+   * Constructor for InstantRunoff.
+   *
+   * @param file reader for the election file, positioned after the voting method
+   */
+  public InstantRunoff(BallotReader file) {
     this.file = file;
     this.candidateList = new ArrayList<>();
   }
@@ -32,31 +51,63 @@ public class InstantRunoff extends Election {
     // read line 2: number of candidates
     file.readLine();
 
-    // read line 3: candidates
+    // read line 3: candidates, each written as Name (Party)
     line = file.readLine();
-    String[] candidates = line.split(",");
-    if (!candidates[0].equals("")) {
-      for (String s : candidates) {   // read each candidate
-        String[] fullcandidate = s.split(" \\(");  // split into candidate and party
-        fullcandidate[1] =
-            fullcandidate[1].substring(0, fullcandidate[1].length() - 1); // remove trailing )
-        candidateList.add(new Candidate(fullcandidate[0], new Party(fullcandidate[1])));
+    BallotTokenizer tokenizer = new BallotTokenizer();
+    tokenizer.reset(line);
+    while (tokenizer.nextField()) {
+      if (tokenizer.isFieldEmpty()) {
+        continue;
       }
+      int open = tokenizer.lastIndexInField('(');
+      if (open == -1) {
+        throw new IOException("Candidate " + tokenizer.fieldString() + " has no party");
+      }
+      int nameEnd = open > tokenizer.getFieldStart() && tokenizer.charAt(open - 1) == ' '
+          ? open - 1 : open;
+      int partyEnd = tokenizer.charAt(tokenizer.getFieldEnd() - 1) == ')'
+          ? tokenizer.getFieldEnd() - 1 : tokenizer.getFieldEnd();
+      candidateList.add(new Candidate(tokenizer.substring(tokenizer.getFieldStart(), nameEnd),
+          new Party(tokenizer.substring(open + 1, partyEnd))));
     }
 
     // read line 4: number of ballots
     line = file.readLine();
     int numBallots = Integer.parseInt(line);
     setTotalVotes(numBallots);
-    setRunoffVotes(numBallots);
 
-    // read remaining lines: ballots
-    for (int i = 0; i < numBallots; i++) {
-      countBallot();
+    // read remaining lines: ballots, counting first choices as they are stored
+    int numCandidates = candidateList.size();
+    int validThreshold = getValidThreshold();
+    // each chunk is merged into the store as soon as it is counted, in file order, so the result
+    // is the same as reading on one thread and only the chunks still being counted are kept
+    ballots = ElectionManager.TRIEMODE
+        ? new PreferenceTrie(numCandidates, numBallots) : null;
+    int[] firstChoiceVotes = new int[numCandidates];
+    file.countBallotChunks(numBallots, numCandidates,
+        () -> new RunoffChunk(numCandidates, numBallots, validThreshold),
+        chunk -> mergeChunk(chunk, firstChoiceVotes, validThreshold));
+    if (ballots == null) {
+      ballots = new BallotArena(numCandidates, numBallots);
     }
+    eliminated = new BitSet(numCandidates);
 
-    // invalidate ballots of candidates that are not at least half filled out
-    updateBallotValidity();
+    // Set the total number of votes for each candidate
+    int heldBallots = 0;
+    for (int i = 0; i < numCandidates; i++) {
+      candidateList.get(i).setVotes(firstChoiceVotes[i]);
+      heldBallots += firstChoiceVotes[i];
+    }
+    setRunoffVotes(heldBallots);
+
+    // Keep the candidates in a heap ordered by their number of votes
+    remaining = new CandidateHeap(candidateList.size());
+    tied = new int[candidateList.size()];
+    lowest = new int[candidateList.size()];
+    for (int i = 0; i < candidateList.size(); i++) {
+      remaining.insert(i, candidateList.get(i).getNumVotes());
+    }
+    findLeader();
 
     appendAuditFile(numBallots + " ballot(s) were cast, but "
         + getNumInvalidBallots() + " invalid ballot(s) were removed leaving "
@@ -64,13 +115,31 @@ public class InstantRunoff extends Election {
     appendFinalResult("Ballots cast: " + numBallots
         + " (valid: " + (numBallots - getNumInvalidBallots())
         + ", invalid: " + getNumInvalidBallots() + ")");
+  }
 
-    // Set the total number of votes for each candidate
-    for (Candidate candidate : getCandidateList()) {
-      for (Ballot ballot : candidate.getBallots()) {
-        if (ballot.isValid()) {
-          candidate.setVotes(candidate.getNumVotes() + 1);
-        }
+  /**
+   * Merges a counted chunk into the ballot store and the first choice votes. Without a trie,
+   * the arena of the first chunk becomes the store, and the later chunks are added to it.
+   *
+   * @param chunk            the counted chunk
+   * @param firstChoiceVotes first choice votes of each candidate so far
+   * @param validThreshold   number of candidates a ballot must rank to be valid
+   */
+  private void mergeChunk(RunoffChunk chunk, int[] firstChoiceVotes, int validThreshold) {
+    if (ballots == null) {
+      ballots = chunk.arena;
+    } else {
+      chunk.arena.addTo(ballots);
+    }
+    for (int i = 0; i < firstChoiceVotes.length; i++) {
+      firstChoiceVotes[i] += chunk.getTally(i);
+    }
+    numInvalidBallots += chunk.numInvalid;
+    if (ElectionManager.DETAILEDAUDIT) {
+      for (int i = 0; i < chunk.numInvalid; i++) {
+        appendAuditFile(String.format(
+            "Ballot %d does not rank at least %d candidates, so it is invalid.",
+            chunk.invalidOrdinals[i] + 1, validThreshold));
       }
     }
   }
@@ -88,13 +157,20 @@ public class InstantRunoff extends Election {
     Candidate winner;
     while ((winner = checkMajority(candidateList)) == null) {
       appendAuditFile("No candidate has majority.");
+      if (ElectionManager.BULKEXCLUSION) {
+        ArrayList<Candidate> losers = eliminateHopeless(candidateList);
+        if (!losers.isEmpty()) {
+          appendAuditFile("Their votes will now be redistributed.");
+          redistributeVotes(candidateList, losers);
+          continue;
+        }
+      }
       Candidate loser = eliminateMin(candidateList);
       appendAuditFile(
           String.format("Candidate \"%s\" has been eliminated. "
-              + "Their votes will now be redistributed and their vote count will be set to -1.",
+              + "Their votes will now be redistributed.",
               loser.getName()));
       redistributeVotes(candidateList, loser);
-      loser.setVotes(-1);
     }
 
     // Append more information about election to media and audit files
@@ -139,34 +215,93 @@ public class InstantRunoff extends Election {
   }
 
   /**
-   * Counts a single ballot.
+   * Counts the ballots of one part of the election file into a ballot arena of its own.
+   * Each ballot is checked for validity and added to its first choice's tally in the same
+   * pass over its ranks. Ballots that do not rank at least half of the candidates are counted
+   * as invalid and never stored, unless invalidation is disabled.
+   * In elections with many candidates, the same pass also collects the marked candidates, so
+   * the ballot is stored from its marks without going over every candidate again.
    */
-  private void countBallot() {
-    String line = null;
-    try {
-      line = file.readLine();
-    } catch (IOException e) {
-      e.printStackTrace();
-    }
-
-    // Convert ballots in file to Ballot class
-    String[] ballotVotes = line.split(",");
-    int[] rankedBallotVotes = new int[candidateList.size()];
-    int candidateToGiveBallot = -1;
-    for (int i = 0; i < ballotVotes.length; i++) {
-      if (ballotVotes[i].equals("")) {
-        continue;
+  private static final class RunoffChunk extends BallotChunk {
+    // elections with at least this many candidates store ballots from their marks
+    private static final int SPARSE_CANDIDATES = 256;
+
+    private final BallotArena arena;
+    private final int validThreshold;
+    private final boolean sparse;
+    private int numInvalid;
+    private int[] invalidOrdinals;
+    private int[] markCandidates;
+    private int[] markRanks;
+
+    /**
+     * Constructor for RunoffChunk.
+     *
+     * @param numCandidates   number of candidates in the election
+     * @param expectedBallots number of ballots the election file says it contains
+     * @param validThreshold  number of candidates a ballot must rank to be valid
+     */
+    RunoffChunk(int numCandidates, int expectedBallots, int validThreshold) {
+      super(numCandidates);
+      this.arena = new BallotArena(numCandidates, expectedBallots);
+      this.validThreshold = validThreshold;
+      this.sparse = numCandidates >= SPARSE_CANDIDATES;
+      this.invalidOrdinals = new int[4];
+      this.markCandidates = new int[sparse ? 16 : 0];
+      this.markRanks = new int[sparse ? 16 : 0];
+    }
+
+    /**
+     * Counts a single ballot.
+     *
+     * @param ordinal    position of the ballot in the file
+     * @param rankedVote rank given to each candidate, 0 if the candidate was not ranked
+     */
+    @Override
+    public void countBallot(int ordinal, int[] rankedVote) {
+      int ranked = 0;
+      int firstChoice = -1;
+      for (int i = 0; i < rankedVote.length; i++) {
+        if (rankedVote[i] == 0) {
+          continue;
+        }
+        if (sparse) {
+          if (ranked == markCandidates.length) {
+            markCandidates = Arrays.copyOf(markCandidates, ranked * 2);
+            markRanks = Arrays.copyOf(markRanks, ranked * 2);
+          }
+          markCandidates[ranked] = i;
+          markRanks[ranked] = rankedVote[i];
+        }
+        ranked++;
+        // when two candidates share a rank, the first one listed takes it
+        if (rankedVote[i] == 1 && firstChoice == -1) {
+          firstChoice = i;
+        }
+      }
+      if (ranked < validThreshold && !ElectionManager.TESTINGMODE) {
+        if (numInvalid == invalidOrdinals.length) {
+          invalidOrdinals = Arrays.copyOf(invalidOrdinals, numInvalid * 2);
+        }
+        invalidOrdinals[numInvalid++] = ordinal;
+        return;
+      }
+      if (sparse) {
+        arena.addMarks(markCandidates, markRanks, ranked);
+      } else {
+        arena.addBallot(rankedVote);
       }
-      rankedBallotVotes[i] = Integer.parseInt(ballotVotes[i]);
-      if (rankedBallotVotes[i] == 1) {
-        candidateToGiveBallot = i;
+      if (firstChoice != -1) {
+        addToTally(firstChoice);
       }
     }
-    candidateList.get(candidateToGiveBallot).getBallots().add(new Ballot(rankedBallotVotes));
   }
 
   /**
    * Checks to see if there is a candidate with the majority of the votes.
+   * The leading candidate and the number of votes still in the runoff are kept up to date as
+   * ballots move, so only the leader needs to be checked. Every remaining candidate is written
+   * to the audit file only when detailed auditing is on.
    *
    * @param clist list of candidates
    * @return candidate with the majority of the votes, null otherwise
@@ -177,26 +312,66 @@ public class InstantRunoff extends Election {
       appendAuditFile("Only one candidate in election, they are automatic winner.");
       return candidateList.get(0);
     }
-    // iterate through candidates and return the one that has majority
     majority = (getRunoffVotes() / 2) + 1;
     appendAuditFile(System.lineSeparator() + "Now checking if any candidate has majority.");
     appendAuditFile(String.format("Votes required for majority: %d", majority));
-    for (Candidate candidate : clist) {
-      if (candidate.getNumVotes() >= majority) {
-        appendAuditFile(
-            String.format("Candidate \"%s\" has majority (has %d of required %d votes).",
-                candidate.getName(), candidate.getNumVotes(), majority));
-        return candidate;
+    if (ElectionManager.DETAILEDAUDIT) {
+      for (int i = 0; i < clist.size(); i++) {
+        if (!eliminated.get(i)) {
+          appendAuditFile(majorityStatus(clist.get(i)));
+        }
       }
-      appendAuditFile(
-          String.format("Candidate \"%s\" does not have majority (has %d of required %d votes).",
-              candidate.getName(), candidate.getNumVotes(), majority));
+    }
+
+    Candidate leading = clist.get(leader);
+    if (!ElectionManager.DETAILEDAUDIT) {
+      appendAuditFile(majorityStatus(leading));
+    }
+    if (leading.getNumVotes() >= majority) {
+      return leading;
+    }
+    // if every other candidate has been eliminated, the last one left is the winner
+    if (remaining.size() == 1) {
+      appendAuditFile(String.format("Candidate \"%s\" is the only candidate left.",
+          leading.getName()));
+      return leading;
     }
     return null;
   }
 
   /**
-   * Returns the candidate with the least amount of votes.
+   * Describes whether a candidate has the majority of the votes, for the audit file.
+   *
+   * @param candidate candidate to describe
+   * @return line for the audit file
+   */
+  private String majorityStatus(Candidate candidate) {
+    if (candidate.getNumVotes() >= majority) {
+      return String.format("Candidate \"%s\" has majority (has %d of required %d votes).",
+          candidate.getName(), candidate.getNumVotes(), majority);
+    }
+    return String.format("Candidate \"%s\" does not have majority (has %d of required %d votes).",
+        candidate.getName(), candidate.getNumVotes(), majority);
+  }
+
+  /**
+   * Finds the remaining candidate with the most votes by looking at every remaining candidate.
+   * This is only needed when the votes of the leader go down or the leader is eliminated.
+   */
+  private void findLeader() {
+    leader = -1;
+    for (int i = 0; i < candidateList.size(); i++) {
+      if (!eliminated.get(i) && (leader == -1
+          || candidateList.get(i).getNumVotes() > candidateList.get(leader).getNumVotes())) {
+        leader = i;
+      }
+    }
+  }
+
+  /**
+   * Returns the candidate with the least amount of votes. The candidates still in the election
+   * are kept in a heap, so the candidates tied for the least votes are found without looking
+   * at every candidate.
    *
    * @param clist list of candidates
    * @return candidate with the least number of votes
@@ -204,27 +379,19 @@ public class InstantRunoff extends Election {
   public Candidate eliminateMin(ArrayList<Candidate> clist) {
     appendAuditFile(
         System.lineSeparator() + "Now checking which candidate has the least number of votes.");
-    int minVotes = -2;
-    ArrayList<Candidate> tiedlist = new ArrayList<>();
-
-    // initial check for the least number of votes (ignoring eliminated candidates)
-    for (int i = 0; i < clist.size(); i++) {
-      if ((minVotes == -2)
-          || clist.get(i).getNumVotes() < minVotes && clist.get(i).getNumVotes() != -1) {
-        minVotes = clist.get(i).getNumVotes();
-      }
-    }
+    int minVotes = remaining.getMinVotes();
+    int numTied = remaining.findMinTies(tied);
 
     appendAuditFile(
         String.format("The following candidate(s) have the least number of votes with %d:",
             minVotes));
 
-    // check which candidates are tied for least number of votes
-    for (Candidate candidate : clist) {
-      if (candidate.getNumVotes() == minVotes) {
-        appendAuditFile(String.format("  %s", candidate.getName()));
-        tiedlist.add(candidate);
-      }
+    // list the candidates that are tied for least number of votes
+    ArrayList<Candidate> tiedlist = new ArrayList<>();
+    for (int i = 0; i < numTied; i++) {
+      Candidate candidate = clist.get(tied[i]);
+      appendAuditFile(String.format("  %s", candidate.getName()));
+      tiedlist.add(candidate);
     }
 
     if (tiedlist.size() == 1) {                 // if no tie, then return candidate with least votes
@@ -234,65 +401,175 @@ public class InstantRunoff extends Election {
     }
   }
 
+  /**
+   * Finds the lowest candidates who cannot win because, even with all of their votes combined,
+   * they have fewer votes than the next candidate up. Taking the largest such group of at least
+   * two candidates lets a round remove all of them at once instead of one per round.
+   * The candidates are taken out of the heap in order of votes and put back afterwards. Once
+   * their combined votes reach the leader's, no larger group can have fewer votes than the
+   * candidate after it, so only the candidates up to that point are taken out.
+   *
+   * @param clist list of candidates
+   * @return candidates that cannot win, empty if fewer than two can be eliminated together
+   */
+  public ArrayList<Candidate> eliminateHopeless(ArrayList<Candidate> clist) {
+    long leaderVotes = leader == -1 ? Long.MAX_VALUE : clist.get(leader).getNumVotes();
+    int numTaken = 0;
+    // ties never split a group, since tied candidates always have at least as many votes combined
+    long combined = 0;
+    long excludedVotes = 0;
+    int numExcluded = 0;
+    while (remaining.size() > 0 && combined < leaderVotes) {
+      int candidate = remaining.pollMin();
+      lowest[numTaken] = candidate;
+      if (numTaken > 0 && combined < clist.get(candidate).getNumVotes()) {
+        numExcluded = numTaken;
+        excludedVotes = combined;
+      }
+      numTaken++;
+      combined += clist.get(candidate).getNumVotes();
+    }
+    for (int i = 0; i < numTaken; i++) {
+      remaining.insert(lowest[i], clist.get(lowest[i]).getNumVotes());
+    }
+
+    ArrayList<Candidate> losers = new ArrayList<>();
+    if (numExcluded < 2) {
+      return losers;
+    }
+    appendAuditFile(
+        System.lineSeparator() + "Now checking which candidates cannot win.");
+    appendAuditFile(
+        String.format("The following candidate(s) have %d votes combined, fewer than the %d votes "
+                + "of candidate \"%s\", so they have been eliminated:",
+            excludedVotes, clist.get(lowest[numExcluded]).getNumVotes(),
+            clist.get(lowest[numExcluded]).getName()));
+    for (int i = 0; i < numExcluded; i++) {
+      Candidate candidate = clist.get(lowest[i]);
+      appendAuditFile(String.format("  %s", candidate.getName()));
+      losers.add(candidate);
+    }
+    return losers;
+  }
+
   /**
    * Redistributes the votes for the ballots that selected the losing candidate.
+   * The losing candidate is marked as eliminated and taken out of the heap of remaining
+   * candidates, and each ballot skips over any
+   * eliminated candidates when it moves on to its next choice. How the ballots are
+   * moved depends on the ballot store used for the election.
    *
    * @param clist list of candidates
    * @param loser candidate whose votes should be redistributed
    */
   public void redistributeVotes(ArrayList<Candidate> clist, Candidate loser) {
-    ArrayList<Ballot> loserBallots = loser.getBallots();
+    ArrayList<Candidate> losers = new ArrayList<>();
+    losers.add(loser);
+    redistributeVotes(clist, losers);
+  }
 
-    // select the next choice for ballots for losing candidate
-    appendAuditFile(
-        String.format("Incrementing the choice number of \"%s\"'s ballots:",
-            loser.getName()));
-    for (Ballot loserBallot : loserBallots) {
-      loserBallot.incrementCurrentDistribution();
+  /**
+   * Redistributes the votes for the ballots that selected any of the losing candidates.
+   * Every loser is marked as eliminated before any ballot moves, so a ballot that lists
+   * several of the losers goes straight to its next choice that is still in the election
+   * and is only moved once. Afterwards the ballot store is given the chance to free the
+   * space of ballots that are no longer held, and the space still in use is written to the
+   * audit file.
+   *
+   * @param clist  list of candidates
+   * @param losers candidates whose votes should be redistributed
+   */
+  public void redistributeVotes(ArrayList<Candidate> clist, ArrayList<Candidate> losers) {
+    int[] loserIndices = new int[losers.size()];
+    boolean leaderLost = false;
+    for (int i = 0; i < loserIndices.length; i++) {
+      loserIndices[i] = clist.indexOf(losers.get(i));
+      eliminated.set(loserIndices[i]);
+      remaining.remove(loserIndices[i]);
+      leaderLost |= loserIndices[i] == leader;
     }
 
     // give each ballot to the next choice candidate
-    for (int i = 0; i < loserBallots.size(); i++) {
-      Ballot loserBallot = loserBallots.get(i);
-      int choiceNumber = loserBallot.findDistributionVote();
-      if (choiceNumber == -1) {     // if voter did not select a next choice, then ignore the ballot
-        appendAuditFile(
-            String.format("  Ballot %d did not have next choice listed, so it is deleted.", i));
-        setRunoffVotes(getRunoffVotes() - 1);
+    int[] received = new int[clist.size()];
+    int exhausted = 0;
+    for (int loserIndex : loserIndices) {
+      exhausted += ballots.transferBallots(loserIndex, eliminated, received);
+    }
+
+    if (losers.size() == 1) {
+      appendAuditFile(String.format("Moving \"%s\"'s ballots to their next choice:",
+          losers.get(0).getName()));
+    } else {
+      appendAuditFile("Moving the eliminated candidates' ballots to their next choice:");
+    }
+    // identical ballots are stored together and do not keep their place in the file, so in a
+    // detailed audit each moved ballot is numbered by its transfer in this round instead
+    int transfer = 1;
+    for (int i = 0; i < received.length; i++) {
+      // ballots passed between losers in the same round end up with a remaining candidate
+      if (received[i] == 0 || eliminated.get(i)) {
         continue;
       }
-      Candidate nextChoice = clist.get(choiceNumber);
+      Candidate nextChoice = clist.get(i);
+      appendAuditFile(
+          String.format("  %d ballot(s) selected candidate \"%s\" as their next choice, "
+                  + "so they will be given to them.",
+              received[i], nextChoice.getName()));
+      if (ElectionManager.DETAILEDAUDIT) {
+        for (int j = 0; j < received[i]; j++) {
+          appendAuditFile(
+              String.format("    Transfer %d: a ballot selected candidate \"%s\" as its next "
+                      + "choice, so it will be given to them.",
+                  transfer++, nextChoice.getName()));
+        }
+      }
+      nextChoice.setVotes(nextChoice.getNumVotes() + received[i]);
+      remaining.update(i, nextChoice.getNumVotes());
+      if (!leaderLost && nextChoice.getNumVotes() > clist.get(leader).getNumVotes()) {
+        leader = i;
+      }
+    }
+    for (Candidate loser : losers) {
+      loser.setVotes(0);
+    }
+    if (leaderLost) {
+      findLeader();
+    }
+    if (exhausted > 0) {
       appendAuditFile(
-          String.format("  Ballot %d selected candidate \"%s\" as their next choice, "
-                  + "so it will be given to them.",
-              i, nextChoice.getName()));
-      nextChoice.getBallots().add(loserBallot);
-      nextChoice.setVotes(nextChoice.getNumVotes() + 1);
+          String.format("  %d ballot(s) did not have next choice listed, so they are deleted.",
+              exhausted));
+      if (ElectionManager.DETAILEDAUDIT) {
+        for (int j = 0; j < exhausted; j++) {
+          appendAuditFile(
+              String.format("    Transfer %d: a ballot did not have next choice listed, "
+                      + "so it is deleted.",
+                  transfer++));
+        }
+      }
+      setRunoffVotes(getRunoffVotes() - exhausted);
     }
+
+    // free the space of ballots no candidate holds any more
+    ballots.compact();
+    appendAuditFile(
+        String.format("%d ballot(s) are still in the runoff, using %d KB of ballot storage.",
+            getRunoffVotes(), (ballots.getStorageBytes() + 1023) / 1024));
   }
 
   /**
-   * Updates the status of the validity of all ballots contained in each candidate of candidateList.
+   * Gets the number of candidates a ballot must rank to be valid, which is at least half
+   * of the candidates in the election.
+   *
+   * @return the validity threshold
    */
-  public void updateBallotValidity() {
-    if (ElectionManager.TESTINGMODE) {
-      return;
-    }
+  private int getValidThreshold() {
     int validThreshold = (getCandidateList().size() / 2);
     if (getCandidateList().size() % 2 != 0) {
       // if threshold is odd, add 1 to round the integer up instead of down
       validThreshold++;
     }
-    for (Candidate candidate : getCandidateList()) {
-      ArrayList<Ballot> ballots = candidate.getBallots();
-      for (Ballot ballot : ballots) {
-        if (ballot.getNumRankedCandidates() < validThreshold) {
-          numInvalidBallots++;
-          ballot.setValid(false);
-        }
-      }
-      candidate.setBallots(ballots);
-    }
+    return validThreshold;
   }
 
   /**
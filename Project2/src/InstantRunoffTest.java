@@ -1,11 +1,17 @@
 import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.File;
 import java.io.IOException;
 import java.io.StringReader;
+import java.io.StringWriter;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
 import java.util.ArrayList;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
 import static org.junit.jupiter.api.Assertions.assertTrue;
 
 /**
@@ -84,6 +90,90 @@ public class InstantRunoffTest {
     assertEquals(0, ir2.getTotalVotes());
   }
 
+  @Test
+  public void testPrepareDataInvalidBallots() throws IOException {
+    ElectionManager.TESTINGMODE = false;
+    BufferedReader fakeReader = new BufferedReader(new StringReader(
+        "4" + System.lineSeparator()
+            + "Rosen (D),Kleinberg (R),Chou (I),Royce (L)" + System.lineSeparator()
+            + "3" + System.lineSeparator()
+            + "1,,2," + System.lineSeparator()
+            + ",,1,2" + System.lineSeparator()
+            + ",,,1"
+    ));
+    InstantRunoff invalid = new InstantRunoff(fakeReader);
+    invalid.prepareData();
+    // the ballot ranking only Royce is invalid, so it is never given to them
+    assertEquals(1, invalid.getNumInvalidBallots());
+    assertEquals(0, invalid.getCandidateList().get(3).getNumVotes());
+    assertEquals(2, invalid.getRunoffVotes());
+    assertEquals(3, invalid.getTotalVotes());
+  }
+
+  @Test
+  public void testPrepareDataInChunks() throws IOException {
+    // a file long enough to be read in several chunks counts the same as one read line by line
+    ElectionManager.TESTINGMODE = false;
+    StringBuilder contents = new StringBuilder("IR\n4\nA (D),B (R),C (I),D (L)\n60000\n");
+    String[] lines = {"1,2,3,4", "2,1,,", ",,1,2", "4,3,2,1", ",,,1", "1,,2,3"};
+    for (int i = 0; i < 60000; i++) {
+      contents.append(lines[(i * 7 + i / 5) % lines.length]).append('\n');
+    }
+    File file = File.createTempFile("election", ".csv");
+    try {
+      Files.write(file.toPath(), contents.toString().getBytes(StandardCharsets.UTF_8));
+      InstantRunoff sequential = new InstantRunoff(
+          new BufferedReader(new StringReader(contents.substring(3))));
+      sequential.prepareData();
+      try (MappedBallotReader reader = new MappedBallotReader(file)) {
+        reader.readLine();
+        InstantRunoff chunked = new InstantRunoff(reader);
+        chunked.prepareData();
+        assertEquals(sequential.getNumInvalidBallots(), chunked.getNumInvalidBallots());
+        assertEquals(sequential.getRunoffVotes(), chunked.getRunoffVotes());
+        for (int i = 0; i < 4; i++) {
+          assertEquals(sequential.getCandidateList().get(i).getNumVotes(),
+              chunked.getCandidateList().get(i).getNumVotes());
+        }
+      }
+    } finally {
+      file.delete();
+    }
+  }
+
+  @Test
+  public void testPrepareDataManyCandidates() throws IOException {
+    // with this many candidates, the ballots are stored from the candidates they mark
+    StringBuilder contents = new StringBuilder("300\n");
+    for (int i = 0; i < 300; i++) {
+      contents.append(i == 0 ? "" : ",").append("C").append(i).append(" (P)");
+    }
+    contents.append("\n4\n");
+    int[][] marks = {{5, 1, 7, 2}, {7, 1}, {7, 1, 5, 2}, {9, 1, 5, 2}};
+    for (int[] ballot : marks) {
+      int[] fields = new int[300];
+      for (int i = 0; i < ballot.length; i += 2) {
+        fields[ballot[i]] = ballot[i + 1];
+      }
+      for (int i = 0; i < 300; i++) {
+        contents.append(i == 0 ? "" : ",").append(fields[i] == 0 ? "" : fields[i]);
+      }
+      contents.append('\n');
+    }
+    InstantRunoff many = new InstantRunoff(
+        new BufferedReader(new StringReader(contents.toString())));
+    many.prepareData();
+    ArrayList<Candidate> candidateList = many.getCandidateList();
+    assertEquals(1, candidateList.get(5).getNumVotes());
+    assertEquals(2, candidateList.get(7).getNumVotes());
+    assertEquals(1, candidateList.get(9).getNumVotes());
+    many.redistributeVotes(candidateList, candidateList.get(9));
+    assertEquals(2, candidateList.get(5).getNumVotes());
+    many.redistributeVotes(candidateList, candidateList.get(5));
+    assertEquals(3, candidateList.get(7).getNumVotes());
+    assertEquals(3, many.getRunoffVotes());
+  }
+
   @Test
   public void testEliminateMin() {
     ArrayList<Candidate> candidateList = ir.getCandidateList();
@@ -113,6 +203,26 @@ public class InstantRunoffTest {
     assertEquals(2, candidateList.get(3).getNumVotes());
   }
 
+  @Test
+  public void testRedistributeVotesDetailedAudit() throws IOException {
+    ArrayList<Candidate> candidateList = ir.getCandidateList();
+    StringWriter audit = new StringWriter();
+    ElectionManager.auditFileWriter = new BufferedWriter(audit);
+    ElectionManager.DETAILEDAUDIT = true;
+    try {
+      // Chou's two ballots go to Kleinberg and Royce
+      ir.redistributeVotes(candidateList, candidateList.get(2));
+      ElectionManager.auditFileWriter.flush();
+    } finally {
+      ElectionManager.auditFileWriter = null;
+      ElectionManager.DETAILEDAUDIT = false;
+    }
+    assertTrue(audit.toString().contains(
+        "    Transfer 1: a ballot selected candidate \"Kleinberg\" as its next choice"));
+    assertTrue(audit.toString().contains(
+        "    Transfer 2: a ballot selected candidate \"Royce\" as its next choice"));
+  }
+
   @Test
   public void testRedistributeVotesTwice() {
     ArrayList<Candidate> candidateList = ir3.getCandidateList();
@@ -127,24 +237,64 @@ public class InstantRunoffTest {
   }
 
   @Test
-  public void testGetSetRunoffVotes() {
-    ir.setRunoffVotes(0);
-    assertEquals(0, ir.getRunoffVotes());
-    ir.setRunoffVotes(10);
-    assertEquals(10, ir.getRunoffVotes());
+  public void testRedistributeVotesBulk() {
+    ArrayList<Candidate> candidateList = ir.getCandidateList();
+    ArrayList<Candidate> losers = new ArrayList<>();
+    losers.add(candidateList.get(2));
+    losers.add(candidateList.get(1));
+    // Chou's ballot ranking Kleinberg next skips over them, since they are eliminated too
+    ir.redistributeVotes(candidateList, losers);
+    assertEquals(4, candidateList.get(0).getNumVotes());
+    assertEquals(0, candidateList.get(1).getNumVotes());
+    assertEquals(0, candidateList.get(2).getNumVotes());
+    assertEquals(2, candidateList.get(3).getNumVotes());
+    assertEquals(6, ir.getRunoffVotes());
   }
 
   @Test
-  public void testUpdateBallotValidity() {
-    ElectionManager.TESTINGMODE = false;
-    ir.updateBallotValidity();
-    assertEquals(1, ir.getNumInvalidBallots());
+  public void testEliminateHopeless() {
+    ArrayList<Candidate> candidateList = ir.getCandidateList();
+    // Kleinberg and Royce have 1 vote together, fewer than Chou's 2
+    ArrayList<Candidate> losers = ir.eliminateHopeless(candidateList);
+    assertEquals(2, losers.size());
+    assertEquals("Kleinberg", losers.get(0).getName());
+    assertEquals("Royce", losers.get(1).getName());
+    ir.redistributeVotes(candidateList, losers);
+    assertEquals(5, ir.getRunoffVotes());
+    // only Chou is left below Rosen, so there is no group of candidates to eliminate together
+    assertTrue(ir.eliminateHopeless(candidateList).isEmpty());
+    assertEquals("Rosen", ir.checkMajority(candidateList).getName());
   }
 
   @Test
-  public void testUpdateBallotValidityNone() {
-    ElectionManager.TESTINGMODE = false;
-    ir3.updateBallotValidity();
-    assertEquals(0, ir.getNumInvalidBallots());
+  public void testEliminateHopelessNone() {
+    // Blue and Red have 2 votes together, the same as Green
+    assertTrue(ir3.eliminateHopeless(ir3.getCandidateList()).isEmpty());
+    assertEquals(3, ir3.getCandidateList().size());
+  }
+
+  @Test
+  public void testCheckMajority() {
+    ArrayList<Candidate> candidateList = ir3.getCandidateList();
+    assertNull(ir3.checkMajority(candidateList));
+    ir3.redistributeVotes(candidateList, candidateList.get(0));
+    assertEquals("Candidate Green", ir3.checkMajority(candidateList).getName());
+  }
+
+  @Test
+  public void testCheckMajorityLastCandidateLeft() {
+    ArrayList<Candidate> candidateList = ir.getCandidateList();
+    ir.redistributeVotes(candidateList, candidateList.get(1));
+    ir.redistributeVotes(candidateList, candidateList.get(3));
+    ir.redistributeVotes(candidateList, candidateList.get(2));
+    assertEquals("Rosen", ir.checkMajority(candidateList).getName());
+  }
+
+  @Test
+  public void testGetSetRunoffVotes() {
+    ir.setRunoffVotes(0);
+    assertEquals(0, ir.getRunoffVotes());
+    ir.setRunoffVotes(10);
+    assertEquals(10, ir.getRunoffVotes());
   }
 }
@@ -0,0 +1,503 @@
+import java.io.File;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
+
+/**
+ * Reads an election file by mapping it into memory. Line endings and fields are found directly
+ * in the mapped bytes, so reading a ballot does not make any strings. Files too large for one
+ * mapping are mapped one window at a time, and a line is never split between two windows.
+ * The ballots can also be split into chunks of whole lines that are parsed on a ForkJoin pool.
+ * When the file has an up to date BallotIndex, the chunks are split at its strides, and any
+ * ballot can be read directly or a random sample of ballots read. The index is only loaded
+ * once it is needed for one of these.
+ * MappedBallotReader.java
+ */
+public class MappedBallotReader extends BallotReader {
+  private static final long WINDOW_SIZE = 1L << 30;
+
+  // a chunk of ballots ends after this many lines or once it is at least this many bytes long
+  private static final int CHUNK_LINES = 1 << 15;
+  private static final long CHUNK_BYTES = 1L << 24;
+
+  private final File file;
+  private final FileChannel channel;
+  private final BallotTokenizer tokenizer;
+  private final long fileSize;
+  private final long windowSize;
+  private MappedByteBuffer window;
+  private long windowStart;
+  private int position;
+  private BallotIndex index;
+  private boolean indexLoaded;
+  private int line;
+  private int numHeaderLines;
+
+  /**
+   * Constructor for MappedBallotReader.
+   *
+   * @param file the election file
+   * @throws IOException if the file cannot be opened or mapped
+   */
+  public MappedBallotReader(File file) throws IOException {
+    this(file, WINDOW_SIZE);
+  }
+
+  /**
+   * Constructor for MappedBallotReader with a chosen window size.
+   *
+   * @param file       the election file
+   * @param windowSize largest number of bytes mapped at once, which must fit the longest line
+   * @throws IOException if the file cannot be opened or mapped
+   */
+  public MappedBallotReader(File file, long windowSize) throws IOException {
+    this.file = file;
+    this.channel = FileChannel.open(file.toPath(), StandardOpenOption.READ);
+    this.fileSize = channel.size();
+    this.windowSize = Math.min(windowSize, Integer.MAX_VALUE);
+    this.tokenizer = new BallotTokenizer();
+    remap(0);
+  }
+
+  @Override
+  public String readLine() throws IOException {
+    int end = findLineEnd();
+    if (end == -1) {
+      return null;
+    }
+    byte[] bytes = new byte[trimLineEnd(end) - position];
+    window.get(position, bytes);
+    position = end + 1;
+    line++;
+    numHeaderLines = line;
+    return new String(bytes, StandardCharsets.UTF_8);
+  }
+
+  @Override
+  protected boolean nextBallot(int[] fields, int ordinal) throws IOException {
+    int end = findLineEnd();
+    if (end == -1) {
+      return false;
+    }
+    tokenizer.reset(window, position, end);
+    tokenizer.readFields(fields, ordinal);
+    position = end + 1;
+    line++;
+    return true;
+  }
+
+  /**
+   * Reads one ballot directly, without moving the reader. The ballots are numbered from the
+   * first line after the lines read with readLine. If the file has no index, the file is
+   * indexed in memory the first time a ballot is read this way.
+   *
+   * @param ordinal position of the ballot among the ballots of the file, starting at 0
+   * @param fields  filled with the value of each field of the ballot
+   * @return false if the file does not have that many ballots
+   * @throws IOException if the file cannot be read or a field is not a number
+   */
+  public boolean readBallot(int ordinal, int[] fields) throws IOException {
+    ByteBuffer bytes = readBallotBytes(ordinal);
+    if (bytes == null) {
+      return false;
+    }
+    tokenizer.reset(bytes, 0, bytes.limit());
+    tokenizer.readFields(fields, ordinal);
+    return true;
+  }
+
+  /**
+   * Reads the text of one ballot directly, without moving the reader, for looking up a ballot
+   * mentioned in the audit file. The ballots are numbered as for readBallot.
+   *
+   * @param ordinal position of the ballot among the ballots of the file, starting at 0
+   * @return the line of the ballot without its line ending, null if there is no such ballot
+   * @throws IOException if the file cannot be read
+   */
+  public String readBallotLine(int ordinal) throws IOException {
+    ByteBuffer bytes = readBallotBytes(ordinal);
+    if (bytes == null) {
+      return null;
+    }
+    int end = bytes.limit();
+    if (end > 0 && bytes.get(end - 1) == '\r') {
+      end--;
+    }
+    return new String(bytes.array(), 0, end, StandardCharsets.UTF_8);
+  }
+
+  /**
+   * Reads a random sample of the ballots directly, without moving the reader. Each ballot is
+   * picked at most once, and the sample is read in file order. The ballots are numbered as for
+   * readBallot.
+   *
+   * @param sampleSize largest number of ballots to read
+   * @param numFields  number of fields of a ballot, usually the number of candidates
+   * @param random     source of the random choice of ballots
+   * @param handler    counts each ballot of the sample
+   * @return number of ballots read, the sample size unless the file has fewer ballots
+   * @throws IOException if the file cannot be read or a field is not a number
+   */
+  public int sampleBallots(int sampleSize, int numFields, Random random, BallotHandler handler)
+      throws IOException {
+    int numBallots = getIndex().getNumLines() - numHeaderLines;
+    if (sampleSize >= numBallots) {
+      sampleSize = numBallots;
+    }
+    // Floyd's algorithm picks the ballots without going through all of them
+    Set<Integer> picked = new HashSet<>();
+    for (int candidate = numBallots - sampleSize; candidate < numBallots; candidate++) {
+      int ordinal = random.nextInt(candidate + 1);
+      picked.add(picked.contains(ordinal) ? candidate : ordinal);
+    }
+    int[] ordinals = new int[picked.size()];
+    int count = 0;
+    for (int ordinal : picked) {
+      ordinals[count++] = ordinal;
+    }
+    Arrays.sort(ordinals);
+    int[] fields = new int[numFields];
+    for (int ordinal : ordinals) {
+      readBallot(ordinal, fields);
+      handler.countBallot(ordinal, fields);
+    }
+    return ordinals.length;
+  }
+
+  /**
+   * Reads the bytes of one ballot line, including any carriage return but not the newline.
+   *
+   * @param ordinal position of the ballot among the ballots of the file, starting at 0
+   * @return the bytes of the line, null if there is no such ballot
+   * @throws IOException if the file cannot be read
+   */
+  private ByteBuffer readBallotBytes(int ordinal) throws IOException {
+    BallotIndex lines = getIndex();
+    int lineNumber = numHeaderLines + ordinal;
+    if (ordinal < 0 || lineNumber >= lines.getNumLines()) {
+      return null;
+    }
+    // the line is found by skipping the lines before it in its stride
+    int stride = lineNumber / lines.getStride();
+    long strideStart = lines.getStrideStart(stride);
+    long strideEnd = lines.getStrideStart(stride + 1);
+    if (strideEnd > fileSize) {
+      throw new IOException("Election file is shorter than its index");
+    }
+    ByteBuffer bytes = channel.map(FileChannel.MapMode.READ_ONLY, strideStart,
+        strideEnd - strideStart);
+    int start = 0;
+    for (int i = stride * lines.getStride(); i < lineNumber; i++) {
+      start = lineEnd(bytes, start) + 1;
+    }
+    byte[] ballot = new byte[lineEnd(bytes, start) - start];
+    bytes.get(start, ballot);
+    return ByteBuffer.wrap(ballot);
+  }
+
+  /**
+   * Finds the end of a line in a buffer.
+   *
+   * @param bytes buffer holding whole lines from position 0 to its limit
+   * @param from  position of the start of the line
+   * @return position of the newline ending the line, or the limit if the line has none
+   */
+  private static int lineEnd(ByteBuffer bytes, int from) {
+    int limit = bytes.limit();
+    while (from < limit && bytes.get(from) != '\n') {
+      from++;
+    }
+    return from;
+  }
+
+  /**
+   * Gets the sidecar index of the file the first time it is needed.
+   *
+   * @return the index, or null if the file has no up to date sidecar index
+   * @throws IOException if the index cannot be read
+   */
+  private BallotIndex loadIndex() throws IOException {
+    if (!indexLoaded) {
+      index = BallotIndex.load(file);
+      indexLoaded = true;
+    }
+    return index;
+  }
+
+  /**
+   * Gets the index of the file, indexing it in memory if it has no sidecar index.
+   *
+   * @return the index
+   * @throws IOException if the file cannot be read
+   */
+  private BallotIndex getIndex() throws IOException {
+    if (loadIndex() == null) {
+      index = BallotIndex.build(file);
+    }
+    return index;
+  }
+
+  /**
+   * Reads ballots until enough have been read or the file ends, counting them into chunks on
+   * a ForkJoin pool. The ballots are split into chunks of whole strides of the index, or with
+   * a quick pass over the line endings if there is none or for the ballots left after the last
+   * whole stride, which also gives every chunk the ordinal of its first ballot. Each chunk is
+   * then mapped and parsed on its own, into its own BallotChunk. Only a few more chunks than
+   * there are threads are counted ahead of the one the consumer is waiting for, so the chunks
+   * held at once do not grow with the file.
+   *
+   * @param maxBallots largest number of ballots to read
+   * @param numFields  number of fields of a ballot, usually the number of candidates
+   * @param newChunk   makes an empty chunk for each part of the file
+   * @param counted    given each chunk once its ballots have been counted
+   * @param <T>        type of chunk
+   * @throws IOException if the file cannot be read or a field is not a number
+   */
+  @Override
+  public <T extends BallotChunk> void countBallotChunks(int maxBallots, int numFields,
+      Supplier<T> newChunk, Consumer<T> counted) throws IOException {
+    int maxInFlight = Math.max(2, 2 * ForkJoinPool.getCommonPoolParallelism());
+    ArrayDeque<ParseTask<T>> inFlight = new ArrayDeque<>();
+    BallotIndex lines = loadIndex();
+    int ordinal = 0;
+    try {
+      long start = windowStart + position;
+      while (lines != null && ordinal < maxBallots) {
+        // the first chunk starts at the reader's line and ends at a stride like the others
+        int stride = line / lines.getStride();
+        long end = start;
+        int numLines = 0;
+        while (true) {
+          int strideEnd = (int) Math.min((long) (stride + 1) * lines.getStride(),
+              lines.getNumLines());
+          int moreLines = strideEnd - (line + numLines);
+          if (moreLines <= 0 || ordinal + numLines + moreLines > maxBallots) {
+            break;
+          }
+          long nextEnd = lines.getStrideStart(stride + 1);
+          if (numLines > 0
+              && (numLines + moreLines > CHUNK_LINES || nextEnd - start > CHUNK_BYTES)) {
+            break;
+          }
+          numLines += moreLines;
+          end = nextEnd;
+          stride++;
+        }
+        if (numLines == 0) {
+          break;
+        }
+        line += numLines;
+        start(new ParseTask<>(newChunk.get(), start, end, ordinal, numLines, numFields),
+            inFlight, maxInFlight, counted);
+        ordinal += numLines;
+        start = end;
+      }
+      seek(start);
+      while (ordinal < maxBallots) {
+        start = windowStart + position;
+        long end = start;
+        int numLines = 0;
+        while (numLines < CHUNK_LINES && ordinal + numLines < maxBallots
+            && end - start < CHUNK_BYTES) {
+          int lineEnd = findLineEnd();
+          if (lineEnd == -1) {
+            break;
+          }
+          end = windowStart + lineEnd;
+          position = lineEnd + 1;
+          numLines++;
+        }
+        if (numLines == 0) {
+          break;
+        }
+        line += numLines;
+        start(new ParseTask<>(newChunk.get(), start, end, ordinal, numLines, numFields),
+            inFlight, maxInFlight, counted);
+        ordinal += numLines;
+      }
+      while (!inFlight.isEmpty()) {
+        finish(inFlight.poll(), counted);
+      }
+    } catch (UncheckedIOException e) {
+      throw e.getCause();
+    } finally {
+      // after an error the chunks still being counted are not wanted
+      for (ParseTask<T> task : inFlight) {
+        task.cancel(false);
+      }
+    }
+  }
+
+  /**
+   * Starts counting a chunk on the ForkJoin pool, first handing on the oldest chunk if too
+   * many are being counted.
+   *
+   * @param task        task counting the chunk
+   * @param inFlight    tasks started and not yet handed on, oldest first
+   * @param maxInFlight largest number of tasks to have started at once
+   * @param counted     given each chunk once its ballots have been counted
+   * @param <T>         type of chunk
+   */
+  private static <T extends BallotChunk> void start(ParseTask<T> task,
+      ArrayDeque<ParseTask<T>> inFlight, int maxInFlight, Consumer<T> counted) {
+    if (inFlight.size() >= maxInFlight) {
+      finish(inFlight.poll(), counted);
+    }
+    task.fork();
+    inFlight.add(task);
+  }
+
+  /**
+   * Waits for a chunk to be counted and hands it on.
+   *
+   * @param task    task counting the chunk
+   * @param counted given the chunk once its ballots have been counted
+   * @param <T>     type of chunk
+   */
+  private static <T extends BallotChunk> void finish(ParseTask<T> task, Consumer<T> counted) {
+    task.join();
+    counted.accept(task.chunk);
+  }
+
+  /**
+   * Parses one chunk of ballot lines into its BallotChunk.
+   */
+  @SuppressWarnings("serial")
+  private final class ParseTask<T extends BallotChunk> extends RecursiveAction {
+    private final T chunk;
+    private final long start;
+    private final long end;
+    private final int firstOrdinal;
+    private final int numLines;
+    private final int numFields;
+
+    /**
+     * Constructor for ParseTask.
+     *
+     * @param chunk        chunk to count the ballots into
+     * @param start        offset in the file of the first line
+     * @param end          offset in the file of the end of the last line
+     * @param firstOrdinal ordinal of the first ballot of the chunk
+     * @param numLines     number of ballot lines in the chunk
+     * @param numFields    number of fields of a ballot
+     */
+    ParseTask(T chunk, long start, long end, int firstOrdinal, int numLines,
+        int numFields) {
+      this.chunk = chunk;
+      this.start = start;
+      this.end = end;
+      this.firstOrdinal = firstOrdinal;
+      this.numLines = numLines;
+      this.numFields = numFields;
+    }
+
+    /**
+     * Maps the lines of the chunk and counts each ballot.
+     */
+    @Override
+    protected void compute() {
+      try {
+        ByteBuffer bytes = channel.map(FileChannel.MapMode.READ_ONLY, start, end - start);
+        chunk.countLines(bytes, firstOrdinal, numLines, numFields);
+      } catch (IOException e) {
+        throw new UncheckedIOException(e);
+      }
+    }
+  }
+
+  /**
+   * Finds the end of the line starting at the current position, moving the window forward
+   * if the line runs past the end of it.
+   *
+   * @return position in the window of the newline ending the line, or of the end of the file
+   *     if the last line has no newline; -1 if there are no more lines
+   * @throws IOException if the line does not fit in a window or the file cannot be mapped
+   */
+  private int findLineEnd() throws IOException {
+    if (windowStart + position >= fileSize) {
+      return -1;
+    }
+    int end = scan(position);
+    if (end == window.limit() && windowStart + end < fileSize) {
+      remap(windowStart + position);
+      end = scan(0);
+      if (end == window.limit() && windowStart + end < fileSize) {
+        throw new IOException("A line of the election file is longer than the mapped window");
+      }
+    }
+    return end;
+  }
+
+  /**
+   * Finds the next newline in the window.
+   *
+   * @param from position in the window to start looking at
+   * @return position of the newline, or the limit of the window if there is none
+   */
+  private int scan(int from) {
+    int limit = window.limit();
+    while (from < limit && window.get(from) != '\n') {
+      from++;
+    }
+    return from;
+  }
+
+  /**
+   * Leaves a carriage return off the end of the line at the current position.
+   *
+   * @param end position in the window where the line ends
+   * @return position in the window after the last character of the line
+   */
+  private int trimLineEnd(int end) {
+    if (end > position && window.get(end - 1) == '\r') {
+      return end - 1;
+    }
+    return end;
+  }
+
+  /**
+   * Moves the reader to an offset in the file, mapping a new window if the offset is not in
+   * the current one.
+   *
+   * @param offset offset in the file of the next line to read
+   * @throws IOException if the file cannot be mapped
+   */
+  private void seek(long offset) throws IOException {
+    if (offset >= windowStart && offset - windowStart <= window.limit()) {
+      position = (int) (offset - windowStart);
+    } else {
+      remap(offset);
+    }
+  }
+
+  /**
+   * Maps the window of the file starting at an offset.
+   *
+   * @param start offset in the file of the first byte of the window
+   * @throws IOException if the file cannot be mapped
+   */
+  private void remap(long start) throws IOException {
+    windowStart = start;
+    window = channel.map(FileChannel.MapMode.READ_ONLY, start,
+        Math.min(windowSize, fileSize - start));
+    position = 0;
+  }
+
+  @Override
+  public void close() throws IOException {
+    channel.close();
+  }
+}
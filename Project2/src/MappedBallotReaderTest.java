@@ -0,0 +1,241 @@
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Tests the methods for the MappedBallotReader class.
+ * MappedBallotReaderTest.java
+ */
+public class MappedBallotReaderTest {
+  private File file;
+
+  /**
+   * Write a short instant runoff file for testing.
+   *
+   * @throws IOException if the file cannot be written
+   */
+  @BeforeEach
+  public void setUp() throws IOException {
+    file = File.createTempFile("election", ".csv");
+    Files.write(file.toPath(),
+        "IR\r\n3\nRosen (D),Kleinberg (R),Chou (I)\n1,3,2\n,1,\r\n12,,\n".getBytes(
+            StandardCharsets.UTF_8));
+  }
+
+  @AfterEach
+  public void tearDown() {
+    file.delete();
+    BallotIndex.sidecar(file).delete();
+  }
+
+  @Test
+  public void testReadLine() throws IOException {
+    try (MappedBallotReader reader = new MappedBallotReader(file)) {
+      assertEquals("IR", reader.readLine());
+      assertEquals("3", reader.readLine());
+      assertEquals("Rosen (D),Kleinberg (R),Chou (I)", reader.readLine());
+    }
+  }
+
+  @Test
+  public void testReadBallots() throws IOException {
+    try (MappedBallotReader reader = new MappedBallotReader(file)) {
+      for (int i = 0; i < 3; i++) {
+        reader.readLine();
+      }
+      int[][] read = new int[3][];
+      assertEquals(3, reader.readBallots(10, 3, (ordinal, fields) -> {
+        read[ordinal] = fields.clone();
+      }));
+      assertArrayEquals(new int[]{1, 3, 2}, read[0]);
+      assertArrayEquals(new int[]{0, 1, 0}, read[1]);
+      assertArrayEquals(new int[]{12, 0, 0}, read[2]);
+      assertNull(reader.readLine());
+    }
+  }
+
+  @Test
+  public void testReadBallotsSmallWindows() throws IOException {
+    // each window only fits a couple of lines, so lines keep crossing window boundaries
+    try (MappedBallotReader reader = new MappedBallotReader(file, 40)) {
+      for (int i = 0; i < 3; i++) {
+        reader.readLine();
+      }
+      int[] sums = new int[3];
+      assertEquals(3, reader.readBallots(10, 3, (ordinal, fields) -> {
+        sums[ordinal] = fields[0] + fields[1] + fields[2];
+      }));
+      assertArrayEquals(new int[]{6, 1, 12}, sums);
+    }
+  }
+
+  @Test
+  public void testLineLongerThanWindow() throws IOException {
+    try (MappedBallotReader reader = new MappedBallotReader(file, 8)) {
+      assertEquals("IR", reader.readLine());
+      assertEquals("3", reader.readLine());
+      assertThrows(IOException.class, reader::readLine);
+    }
+  }
+
+  @Test
+  public void testReadBallotChunks() throws IOException {
+    assertReadsChunks(false);
+  }
+
+  @Test
+  public void testReadBallotChunksWithIndex() throws IOException {
+    assertReadsChunks(true);
+  }
+
+  /**
+   * Reads a file long enough to be split into several chunks and checks the chunks.
+   *
+   * @param indexed whether the file is indexed before it is read
+   * @throws IOException if the file cannot be written or read
+   */
+  private void assertReadsChunks(boolean indexed) throws IOException {
+    StringBuilder contents = new StringBuilder("PO\n");
+    for (int i = 0; i < 100000; i++) {
+      contents.append(i % 3 == 0 ? "1,," : (i % 3 == 1 ? ",1," : ",,1")).append('\n');
+    }
+    Files.write(file.toPath(), contents.toString().getBytes(StandardCharsets.UTF_8));
+    if (indexed) {
+      BallotIndex.build(file).write(file);
+    }
+    try (MappedBallotReader reader = new MappedBallotReader(file)) {
+      reader.readLine();
+      List<OrdinalChunk> chunks = reader.readBallotChunks(99999, 3, OrdinalChunk::new);
+      assertTrue(chunks.size() > 1);
+      int nextOrdinal = 0;
+      int[] votes = new int[3];
+      for (OrdinalChunk chunk : chunks) {
+        // every chunk continues where the one before it stopped
+        assertEquals(nextOrdinal, chunk.firstOrdinal);
+        nextOrdinal += chunk.numBallots;
+        for (int i = 0; i < 3; i++) {
+          votes[i] += chunk.getTally(i);
+        }
+      }
+      assertEquals(99999, nextOrdinal);
+      assertArrayEquals(new int[]{33333, 33333, 33333}, votes);
+      assertEquals("1,,", reader.readLine());
+    }
+  }
+
+  @Test
+  public void testReadBallot() throws IOException {
+    BallotIndex.build(file).write(file);
+    try (MappedBallotReader reader = new MappedBallotReader(file)) {
+      for (int i = 0; i < 3; i++) {
+        reader.readLine();
+      }
+      int[] fields = new int[3];
+      assertTrue(reader.readBallot(2, fields));
+      assertArrayEquals(new int[]{12, 0, 0}, fields);
+      assertTrue(reader.readBallot(0, fields));
+      assertArrayEquals(new int[]{1, 3, 2}, fields);
+      assertFalse(reader.readBallot(3, fields));
+      assertEquals(",1,", reader.readBallotLine(1));
+      // reading ballots directly does not move the reader
+      assertEquals(3, reader.readBallots(10, 3, (ordinal, read) -> { }));
+    }
+  }
+
+  @Test
+  public void testReadBallotAcrossStrides() throws IOException {
+    BallotIndex.build(file, 2).write(file);
+    try (MappedBallotReader reader = new MappedBallotReader(file)) {
+      for (int i = 0; i < 3; i++) {
+        reader.readLine();
+      }
+      assertEquals("1,3,2", reader.readBallotLine(0));
+      assertEquals(",1,", reader.readBallotLine(1));
+      assertEquals("12,,", reader.readBallotLine(2));
+      assertNull(reader.readBallotLine(3));
+      List<OrdinalChunk> chunks = reader.readBallotChunks(10, 3, OrdinalChunk::new);
+      assertEquals(3, chunks.stream().mapToInt(chunk -> chunk.numBallots).sum());
+    }
+  }
+
+  @Test
+  public void testReadBallotWithoutIndex() throws IOException {
+    try (MappedBallotReader reader = new MappedBallotReader(file)) {
+      reader.readLine();
+      assertEquals("Rosen (D),Kleinberg (R),Chou (I)", reader.readBallotLine(1));
+      assertNull(reader.readBallotLine(5));
+    }
+  }
+
+  @Test
+  public void testSampleBallots() throws IOException {
+    StringBuilder contents = new StringBuilder("PO\n");
+    for (int i = 0; i < 1000; i++) {
+      contents.append(i).append(",,\n");
+    }
+    Files.write(file.toPath(), contents.toString().getBytes(StandardCharsets.UTF_8));
+    BallotIndex.build(file).write(file);
+    try (MappedBallotReader reader = new MappedBallotReader(file)) {
+      reader.readLine();
+      List<Integer> sampled = new ArrayList<>();
+      assertEquals(50, reader.sampleBallots(50, 3, new Random(18), (ordinal, fields) -> {
+        // each ballot holds its own ordinal
+        assertEquals(ordinal, fields[0]);
+        sampled.add(ordinal);
+      }));
+      for (int i = 1; i < sampled.size(); i++) {
+        assertTrue(sampled.get(i - 1) < sampled.get(i));
+      }
+      assertEquals(1000, reader.sampleBallots(2000, 3, new Random(18), (ordinal, fields) -> { }));
+    }
+  }
+
+  @Test
+  public void testEmptyFile() throws IOException {
+    Files.write(file.toPath(), new byte[0]);
+    try (MappedBallotReader reader = new MappedBallotReader(file)) {
+      assertNull(reader.readLine());
+      assertEquals(0, reader.readBallots(10, 3, (ordinal, fields) -> { }));
+    }
+  }
+
+  /**
+   * Counts the votes of a chunk and checks that its ballots come in order.
+   */
+  private static class OrdinalChunk extends BallotChunk {
+    private int firstOrdinal = -1;
+    private int numBallots;
+
+    OrdinalChunk() {
+      super(3);
+    }
+
+    @Override
+    public void countBallot(int ordinal, int[] fields) {
+      if (firstOrdinal == -1) {
+        firstOrdinal = ordinal;
+      }
+      assertEquals(firstOrdinal + numBallots, ordinal);
+      numBallots++;
+      for (int i = 0; i < fields.length; i++) {
+        if (fields[i] == 1) {
+          addToTally(i);
+        }
+      }
+    }
+  }
+}
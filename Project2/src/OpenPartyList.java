@@ -1,8 +1,10 @@
 import java.io.BufferedReader;
 import java.io.IOException;
+import java.io.UncheckedIOException;
 import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.Map;
+import java.util.PriorityQueue;
 import java.util.Random;
 
 /**
@@ -12,12 +14,45 @@ import java.util.Random;
  * @author Linh Duong, Henry Huynh
  */
 public class OpenPartyList extends Election {
-  private final BufferedReader reader;
+  /**
+   * The ways of allocating the seats of an open party list election.
+   */
+  public enum SeatMethod {
+    /**
+     * Allocates the seats by the largest remainder after the Hare quota.
+     */
+    LARGEST_REMAINDER("Largest Remainder", 0),
+    /**
+     * Allocates the seats one at a time by the D'Hondt divisors 1, 2, 3, ...
+     */
+    DHONDT("D'Hondt", 1),
+    /**
+     * Allocates the seats one at a time by the Sainte-Lague divisors 1, 3, 5, ...
+     */
+    SAINTE_LAGUE("Sainte-Lague", 2);
+
+    private final String displayName;
+    // each seat a party wins adds this to its divisor in a divisor method
+    private final int divisorStep;
+
+    /**
+     * SeatMethod constructor.
+     *
+     * @param displayName name of the method written to the audit and media files
+     * @param divisorStep step between the divisors of a divisor method, 0 if it is not one
+     */
+    SeatMethod(String displayName, int divisorStep) {
+      this.displayName = displayName;
+      this.divisorStep = divisorStep;
+    }
+  }
+
+  private final BallotReader reader;
+  private final SeatMethod method;
   private ArrayList<Party> partyList;
   private ArrayList<Candidate> electedList;
   private ArrayList<Party> initialVotes;
-  private ArrayList<String> candidateList;
-  private ArrayList<String> partyIndex;
+  private ArrayList<Candidate> ballotOrder;
   private int totalSeats;
   private int numSeats;
   private int quota;
@@ -28,47 +63,90 @@ public class OpenPartyList extends Election {
    * @param file Takes in a BufferedReader to prepare data from.
    */
   public OpenPartyList(BufferedReader file) {
+    this(new TextBallotReader(file));
+  }
+
+  /**
+   * OpenPartyList constructor.
+   *
+   * @param file Takes in a BallotReader positioned after the voting method to prepare data from.
+   */
+  public OpenPartyList(BallotReader file) {
+    this(file, SeatMethod.LARGEST_REMAINDER);
+  }
+
+  /**
+   * OpenPartyList constructor.
+   *
+   * @param file   Takes in a BallotReader positioned after the voting method to prepare data from.
+   * @param method method of allocating the seats
+   */
+  public OpenPartyList(BallotReader file, SeatMethod method) {
     this.reader = file;
+    this.method = method;
+  }
+
+  /**
+   * Checks whether a type of election is a party list election, whose files give the number
+   * of seats after the candidates.
+   *
+   * @param type type of election from the first line of the file
+   * @return true for OPL and the divisor method types DHONDT and SAINTELAGUE
+   */
+  public static boolean isPartyList(String type) {
+    return "OPL".equals(type) || "DHONDT".equals(type) || "SAINTELAGUE".equals(type);
   }
 
 
   /**
-   * Prepares data from the BufferedReader.
-   * On BufferedReader line 3: generates parties and candidates from [Candidate,Party],.... format
-   * On BufferedReader line 4: sets the available seats to win.
-   * On BufferedReader line 6+: counts the ballot and updates the data stored in partyList.
+   * Prepares data from the BallotReader.
+   * On line 3: generates parties and candidates from [Candidate,Party],.... format
+   * On line 4: sets the available seats to win.
+   * On line 6+: counts the ballot and updates the data stored in partyList.
+   * Once the file has been read, calling this again does nothing.
+   *
+   * @throws IOException if the file cannot be read or a ballot is not formatted properly
    */
-  public void prepareData() {
-    int lineNum = 1;
-    try {
-      String line = reader.readLine();
-      while (line != null) {
-        //Line 2: Instantiate ArrayList for candidate and party index.
-        if (lineNum == 1) {
-          candidateList = new ArrayList<String>();
-          partyIndex = new ArrayList<String>();
-        }
-        //Line 3: Uses helper function to generate parties and candidates.
-        if (lineNum == 2) {
-          generateParticipants(line);
-        }
-        //Line 4: Sets number of seats available to win.
-        if (lineNum == 3) {
-          numSeats = Integer.parseInt(line);
-        }
-        //Line 5: Set total votes.
-        if (lineNum == 4) {
-          setTotalVotes(Integer.parseInt(line));
-        }
-        //Line 6+: Uses helper function to generate a ballot for each line.
-        if (lineNum >= 5) {
-          countBallot(line);
-        }
-        lineNum += 1;
-        line = reader.readLine();
-      }
-    } catch (IOException e) {
-      e.printStackTrace();
+  public void prepareData() throws IOException {
+    //Line 2: Instantiate ArrayList for the candidates in ballot order.
+    String line = reader.readLine();
+    if (line == null) {
+      return;
+    }
+    ballotOrder = new ArrayList<Candidate>();
+    //Line 3: Uses helper function to generate parties and candidates.
+    line = reader.readLine();
+    if (line == null) {
+      return;
+    }
+    generateParticipants(line);
+    //Line 4: Sets number of seats available to win.
+    line = reader.readLine();
+    if (line == null) {
+      return;
+    }
+    numSeats = Integer.parseInt(line);
+    //Line 5: Set total votes.
+    line = reader.readLine();
+    if (line == null) {
+      return;
+    }
+    setTotalVotes(Integer.parseInt(line));
+    //Line 6+: Counts the ballots in chunks, adding up each chunk's votes by position once counted.
+    int numCandidates = ballotOrder.size();
+    int[] votes = new int[numCandidates];
+    reader.countBallotChunks(Integer.MAX_VALUE, numCandidates,
+        () -> new PartyListChunk(numCandidates), chunk -> {
+          for (int i = 0; i < numCandidates; i++) {
+            votes[i] += chunk.getTally(i);
+          }
+        });
+    //Fills in the candidate and party totals once every ballot has been counted.
+    for (int i = 0; i < numCandidates; i++) {
+      Candidate candidate = ballotOrder.get(i);
+      Party party = candidate.getParty();
+      candidate.setVotes(candidate.getNumVotes() + votes[i]);
+      party.setPartyVotes(party.getPartyVotes() + votes[i]);
     }
   }
 
@@ -78,26 +156,30 @@ public class OpenPartyList extends Election {
 
   /**
    * Helper function for BufferedReader line 3, generates the parties and candidates.
+   * Each candidate is also kept by its position on the ballot, so votes are counted by position
+   * without looking up any names.
    *
    * @param line String of pattern [Candidate,Party],...
    */
   public void generateParticipants(String line) {
-    line = line.replace("[", "");
-    line = line.replace("]", "");
-    // Splits line into array of ["Candidate" , "Party"]
-    String[] toSort = line.split(",");
+    // Walks the fields "[Candidate" , "Party]" of the line, leaving off the brackets.
+    BallotTokenizer tokenizer = new BallotTokenizer();
+    tokenizer.reset(line);
     //Map with party name as key, each containing an arraylist of candidate names.
     Map<String, ArrayList<Candidate>> sorted = new HashMap<>();
 
     // Candidates are located at even indices, parties at odd.
-    for (int i = 0; i < toSort.length; i++) {
+    String candidateName = null;
+    for (int i = 0; tokenizer.nextField(); i++) {
+      String field = tokenizer.fieldString();
       // Checks if the current index contains a party.
       if (i % 2 != 0) {
         //Adds candidate object to a key (party object) and creates the key if it doesn't exist.
-        sorted.computeIfAbsent(toSort[i], k -> new ArrayList<>()).add(new Candidate(toSort[i - 1]));
-        partyIndex.add(toSort[i]);                     //To store party order.
+        Candidate candidate = new Candidate(candidateName);
+        sorted.computeIfAbsent(field, k -> new ArrayList<>()).add(candidate);
+        ballotOrder.add(candidate);                    //To store candidate order.
       } else {
-        candidateList.add(toSort[i]);                  //To store candidate order.
+        candidateName = field;
       }
     }
 
@@ -126,9 +208,18 @@ public class OpenPartyList extends Election {
    * @return the winner of the election
    */
   public ArrayList<Candidate> runElection() {
-    appendFinalResult("Type of election: Open Party List" + System.lineSeparator());
+    if (method == SeatMethod.LARGEST_REMAINDER) {
+      appendFinalResult("Type of election: Open Party List" + System.lineSeparator());
+    } else {
+      appendFinalResult(String.format("Type of election: Open Party List, %s method",
+          getMethodName()) + System.lineSeparator());
+    }
     appendAuditFile("Beginning Open Party List election." + System.lineSeparator());
-    prepareData();
+    try {
+      prepareData();
+    } catch (IOException e) {
+      throw new UncheckedIOException(e);
+    }
 
     // Displaying the initial votes
     appendFinalResult("Initial votes:");
@@ -141,16 +232,23 @@ public class OpenPartyList extends Election {
       appendFinalResult(String.format("Party \"%s\": %d", party.getName(), party.getPartyVotes()));
     }
 
-    // First Allocation of Seats
-    appendAuditFile(System.lineSeparator() + "First allocation of seats:");
-    quota = getTotalVotes() / numSeats;
-    allocateSeats(partyList);
-    checkRemainingSeats();
-
-    // Second Allocation of Seats
-    appendAuditFile(System.lineSeparator() + "Second allocation of seats:");
-    appendAuditFile(String.format("%d remaining seats needed to be allocated.", numSeats));
-    allocateRemainingSeats(partyList, numSeats);
+    if (method == SeatMethod.LARGEST_REMAINDER) {
+      // First Allocation of Seats
+      appendAuditFile(System.lineSeparator() + "First allocation of seats:");
+      quota = getTotalVotes() / numSeats;
+      allocateSeats(partyList);
+      checkRemainingSeats();
+
+      // Second Allocation of Seats
+      appendAuditFile(System.lineSeparator() + "Second allocation of seats:");
+      appendAuditFile(String.format("%d remaining seats needed to be allocated.", numSeats));
+      allocateRemainingSeats(partyList, numSeats);
+    } else {
+      appendAuditFile(System.lineSeparator() + String.format("Allocation of seats by the %s method:",
+          getMethodName()));
+      appendAuditFile(String.format("%d seats needed to be allocated.", numSeats));
+      allocateDivisorSeats(partyList, numSeats);
+    }
 
     // Final Seat Total
     appendFinalResult(System.lineSeparator() + "Winner(s) of election:");
@@ -176,7 +274,27 @@ public class OpenPartyList extends Election {
       appendAuditFile(String.format("Party \"%s\" got %d seats. This party has %d candidates. ",
           party.getName(), party.getPartySeats(), party.getCandidateList().size()));
 
-      ArrayList<Candidate> electedCandidates = party.getTopXCandidate(winningSeats);
+      ArrayList<Candidate> tieCandidates = new ArrayList<>();
+      ArrayList<Candidate> electedCandidates = party.getTopXCandidate(winningSeats, tieCandidates);
+      if (!tieCandidates.isEmpty()) {
+        // the tied candidates are the last ones chosen, so their seats are tossed for again
+        int tiedSeats = 0;
+        for (Candidate cand : tieCandidates) {
+          if (electedCandidates.remove(cand)) {
+            tiedSeats++;
+          }
+        }
+        appendAuditFile(String.format("There are %d candidates with the same votes for the last %d seats:",
+            tieCandidates.size(), tiedSeats));
+        for (Candidate cand : tieCandidates) {
+          appendAuditFile(String.format("    - Candidate \"%s\"", cand.getName()));
+        }
+        for (int i = 0; i < tiedSeats; i++) {
+          // the coin toss leaves a null where the winner was, so it cannot win again
+          electedCandidates.add(coinToss(tieCandidates));
+          tieCandidates.remove(null);
+        }
+      }
       for (Candidate cand : electedCandidates) {
         appendAuditFile(String.format("  Candidate \"%s\" won a seat.", cand.getName()));
         appendFinalResult(String.format("Candidate \"%s\" from party \"%s\".",
@@ -203,38 +321,30 @@ public class OpenPartyList extends Election {
   }
 
   /**
-   * Helper function used on BufferedReader line 6+ to count the vote.
+   * Counts the ballots of one part of the election file.
    * Each ballot given in format where a vote is '1' and non-vote is ','.
-   *
-   * @param line String of ballot format.
    */
-  private void countBallot(String line) {
-    int candidateIndex = -1;
-    char[] vote = line.toCharArray();
-    for (int i = 0; i < line.length(); i++) {
-      if (vote[i] == '1') {
-        candidateIndex = i;
-      }
+  private static final class PartyListChunk extends BallotChunk {
+    /**
+     * PartyListChunk constructor.
+     *
+     * @param numCandidates int representing the number of candidates in the election.
+     */
+    PartyListChunk(int numCandidates) {
+      super(numCandidates);
     }
 
-    String candidateName = candidateList.get(candidateIndex);
-    String partyName = partyIndex.get(candidateIndex);
-
-    for (Party party : partyList) {
-
-      if (party.getName().equals(partyName)) {
-
-        //Update the vote count for the party total.
-        party.setPartyVotes(party.getPartyVotes() + 1);
-
-        //Update the vote count for the candidate who received the vote.
-        ArrayList<Candidate> updatedList = party.getCandidateList();
-        for (Candidate currCandidate : updatedList) {
-          if (currCandidate.getName().equals(candidateName)) {
-            currCandidate.setVotes(currCandidate.getNumVotes() + 1);
-          }
-        }
-        party.addCandidateList(updatedList);
+    /**
+     * Helper function used on line 6+ to count the vote.
+     *
+     * @param ordinal position of the ballot in the file.
+     * @param vote    value of each field of the ballot, 1 for the candidate voted for.
+     */
+    @Override
+    public void countBallot(int ordinal, int[] vote) {
+      int candidateIndex = findMark(vote);
+      if (candidateIndex != -1) {
+        addToTally(candidateIndex);
       }
     }
   }
@@ -287,43 +397,6 @@ public class OpenPartyList extends Election {
   }
 
 
-  /**
-   * Function to find the party with the greatest remaining votes after seat allocation.
-   *
-   * @param partylst ArrayList of Party containing all the parties and their candidates.
-   * @return Party with the largest remaining votes.
-   */
-  public Party getLargestRemainderVotes(ArrayList<Party> partylst) {
-    Party largestParty = partylst.get(0);
-    int maxVotes = largestParty.getPartyVotes();
-    // First loop: check for the party with largest votes
-    for (Party party : partylst) {
-      if ((party.getPartyVotes() > maxVotes)
-          && (party.getPartySeats() < party.getCandidateList().size())) {
-        maxVotes = party.getPartyVotes();
-        largestParty = party;
-      }
-    }
-
-    ArrayList<Party> tieParties = new ArrayList<>();
-    // Second loop: check if other parties have the same largest votes
-    for (Party party : partylst) {
-      if (party.getPartyVotes() == maxVotes) {
-        tieParties.add(party);
-      }
-    }
-
-    if (tieParties.size() > 1) {
-      appendAuditFile(String.format("There are %d parties with the same largest votes:", tieParties.size()));
-      for (Party party : tieParties) {
-        appendAuditFile(String.format("    - Party \"%s\"", party.getName()));
-      }
-      largestParty = coinTossParty(tieParties);
-    }
-
-    return largestParty;
-  }
-
   /**
    * Function to fairly toss a coin and decide a winner given that party(s) have tied in remaining seats.
    *
@@ -346,27 +419,162 @@ public class OpenPartyList extends Election {
 
   /**
    * Function to allocate the remaining seats after previous seat allocation.
+   * Parties that can still take a seat are kept in a heap keyed on their remaining votes, so each
+   * seat is given out in O(log n) time. A party is dropped from the heap once every one of its
+   * candidates has a seat.
    *
    * @param partyLst   ArrayList of Party containing all the parties and their candidates.
    * @param availSeats int representing the remaining available seats.
    */
   public void allocateRemainingSeats(ArrayList<Party> partyLst, int availSeats) {
-    if (availSeats == 0) {
-      return;
+    // CandidateHeap is a min-heap, so the remaining votes are negated to find the largest first
+    CandidateHeap remainders = new CandidateHeap(partyLst.size());
+    for (int i = 0; i < partyLst.size(); i++) {
+      Party party = partyLst.get(i);
+      if (party.getPartySeats() < party.getCandidateList().size()) {
+        remainders.insert(i, -party.getPartyVotes());
+      }
+    }
+
+    int[] tied = new int[partyLst.size()];
+    while (availSeats > 0) {
+      if (remainders.size() == 0) {
+        appendAuditFile(String.format("Every party has filled all of its seats; %d seats are left unfilled.",
+            availSeats));
+        return;
+      }
+
+      int numTied = remainders.findMinTies(tied);
+      int winnerIndex = tied[0];
+      if (numTied > 1) {
+        appendAuditFile(String.format("There are %d parties with the same largest votes:", numTied));
+        ArrayList<Party> tieParties = new ArrayList<>();
+        for (int i = 0; i < numTied; i++) {
+          tieParties.add(partyLst.get(tied[i]));
+          appendAuditFile(String.format("    - Party \"%s\"", partyLst.get(tied[i]).getName()));
+        }
+        coinTossParty(tieParties);
+        // the coin toss clears the winner's slot
+        winnerIndex = tied[tieParties.indexOf(null)];
+      }
+
+      Party winner = partyLst.get(winnerIndex);
+      winner.setPartySeats(winner.getPartySeats() + 1);
+      winner.setPartyVotes(winner.getPartyVotes() - quota);
+      if (winner.getPartyVotes() < 0) {
+        winner.setPartyVotes(0);
+      }
+      if (winner.getPartySeats() < winner.getCandidateList().size()) {
+        remainders.update(winnerIndex, -winner.getPartyVotes());
+      } else {
+        remainders.remove(winnerIndex);
+      }
+
+      availSeats--;
+      numSeats--;
+      appendAuditFile(String.format("Party \"%s\" has won a seat. It currently have total of %d seats.",
+          winner.getName(), winner.getPartySeats()));
+      appendAuditFile(String.format("%d remaining seats needed to be allocated.", numSeats));
+    }
+  }
+
+  /**
+   * Function to allocate seats one at a time by a divisor method. Each seat goes to the party
+   * with the largest quotient of its votes over its divisor, which grows with every seat it wins.
+   * Parties are kept in a heap ordered by quotient, so each seat is given out in O(log n) time,
+   * and a party is dropped from the heap once every one of its candidates has a seat.
+   * Quotients are compared by cross multiplying, so equal quotients are always found to be tied.
+   *
+   * @param partyLst   ArrayList of Party containing all the parties and their candidates.
+   * @param availSeats int representing the seats to be allocated.
+   */
+  public void allocateDivisorSeats(ArrayList<Party> partyLst, int availSeats) {
+    PriorityQueue<Integer> quotients = new PriorityQueue<>(Math.max(1, partyLst.size()), (a, b) -> {
+      int byQuotient = compareQuotients(partyLst.get(b), partyLst.get(a));
+      return byQuotient != 0 ? byQuotient : Integer.compare(a, b);
+    });
+    for (int i = 0; i < partyLst.size(); i++) {
+      Party party = partyLst.get(i);
+      if (party.getPartySeats() < party.getCandidateList().size()) {
+        quotients.add(i);
+      }
     }
 
-    Party winner = getLargestRemainderVotes(partyLst);
-    winner.setPartySeats(winner.getPartySeats() + 1);
-    winner.setPartyVotes(winner.getPartyVotes() - quota);
-    if (winner.getPartyVotes() < 0) {
-      winner.setPartyVotes(0);
+    ArrayList<Integer> tied = new ArrayList<>();
+    while (availSeats > 0) {
+      if (quotients.isEmpty()) {
+        appendAuditFile(String.format("Every party has filled all of its seats; %d seats are left unfilled.",
+            availSeats));
+        return;
+      }
+
+      tied.clear();
+      tied.add(quotients.poll());
+      while (!quotients.isEmpty()
+          && compareQuotients(partyLst.get(quotients.peek()), partyLst.get(tied.get(0))) == 0) {
+        tied.add(quotients.poll());
+      }
+      int winnerIndex = tied.get(0);
+      if (tied.size() > 1) {
+        appendAuditFile(String.format("There are %d parties with the same largest quotient:", tied.size()));
+        ArrayList<Party> tieParties = new ArrayList<>();
+        for (int index : tied) {
+          tieParties.add(partyLst.get(index));
+          appendAuditFile(String.format("    - Party \"%s\"", partyLst.get(index).getName()));
+        }
+        coinTossParty(tieParties);
+        winnerIndex = tied.get(tieParties.indexOf(null));
+        for (int index : tied) {
+          if (index != winnerIndex) {
+            quotients.add(index);
+          }
+        }
+      }
+
+      Party winner = partyLst.get(winnerIndex);
+      double quotient = (double) winner.getPartyVotes() / divisor(winner);
+      winner.setPartySeats(winner.getPartySeats() + 1);
+      if (winner.getPartySeats() < winner.getCandidateList().size()) {
+        quotients.add(winnerIndex);
+      }
+
+      availSeats--;
+      numSeats--;
+      appendAuditFile(String.format("Party \"%s\" has won a seat with a quotient of %.2f. It currently have total of %d seats.",
+          winner.getName(), quotient, winner.getPartySeats()));
+      appendAuditFile(String.format("%d remaining seats needed to be allocated.", numSeats));
     }
+  }
+
+  /**
+   * Gets the name of the divisor method used to allocate the seats.
+   *
+   * @return D'Hondt or Sainte-Lague
+   */
+  private String getMethodName() {
+    return method.displayName;
+  }
 
-    numSeats--;
-    appendAuditFile(String.format("Party \"%s\" has won a seat. It currently have total of %d seats.",
-        winner.getName(), winner.getPartySeats()));
-    appendAuditFile(String.format("%d remaining seats needed to be allocated.", numSeats));
-    allocateRemainingSeats(partyLst, numSeats);
+  /**
+   * Gets the divisor of a party's votes for its next seat.
+   *
+   * @param party party to find the divisor of
+   * @return the divisor, one more than the party's seats times the step of the method
+   */
+  private int divisor(Party party) {
+    return method.divisorStep * party.getPartySeats() + 1;
+  }
+
+  /**
+   * Compares the quotients of two parties for their next seats.
+   *
+   * @param first  party to compare
+   * @param second party to compare with
+   * @return negative, zero or positive as the first quotient is smaller, equal or larger
+   */
+  private int compareQuotients(Party first, Party second) {
+    return Long.compare((long) first.getPartyVotes() * divisor(second),
+        (long) second.getPartyVotes() * divisor(first));
   }
 
   /**
@@ -1,10 +1,13 @@
 import java.io.BufferedReader;
+import java.io.IOException;
 import java.io.StringReader;
 import java.util.ArrayList;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
 import static org.junit.jupiter.api.Assertions.assertTrue;
 
 /**
@@ -18,9 +21,11 @@ public class OpenPartyListTest {
 
   /**
    * Set up the open party list elections for testing.
+   *
+   * @throws IOException if the election cannot be read
    */
   @BeforeEach
-  public void setUp() {
+  public void setUp() throws IOException {
     BufferedReader fakeReader = new BufferedReader(new StringReader(
         "6" + System.lineSeparator()
             + "[Pike,D],[Foster,D],[Deutsch,R],[Borg,R],[Jones,R],[Smith,I]"
@@ -49,6 +54,48 @@ public class OpenPartyListTest {
     assertEquals(9, opl.getTotalVotes());
   }
 
+  @Test
+  public void testPrepareDataVotes() {
+    // Party "R" is listed first: Deutsch, Borg, Jones. Party "D": Pike, Foster.
+    assertEquals(3, opl.getPartyList().get(0).getPartyVotes());
+    assertEquals(2, opl.getPartyList().get(0).getCandidateList().get(1).getNumVotes());
+    assertEquals(5, opl.getPartyList().get(1).getPartyVotes());
+    assertEquals(3, opl.getPartyList().get(1).getCandidateList().get(0).getNumVotes());
+    assertEquals(2, opl.getPartyList().get(1).getCandidateList().get(1).getNumVotes());
+  }
+
+  @Test
+  public void testPrepareDataMalformedBallot() {
+    OpenPartyList malformed = new OpenPartyList(new BufferedReader(new StringReader(
+        "2" + System.lineSeparator()
+            + "[Pike,D],[Deutsch,R]" + System.lineSeparator()
+            + "1" + System.lineSeparator()
+            + "2" + System.lineSeparator()
+            + "1," + System.lineSeparator()
+            + "x," + System.lineSeparator()
+    )));
+    assertThrows(IOException.class, malformed::prepareData);
+  }
+
+  @Test
+  public void testPrepareDataSameNames() throws IOException {
+    // votes go to the candidate in the marked position, even when two candidates share a name
+    OpenPartyList sameNames = new OpenPartyList(new BufferedReader(new StringReader(
+        "2" + System.lineSeparator()
+            + "[Smith,D],[Smith,D]" + System.lineSeparator()
+            + "1" + System.lineSeparator()
+            + "3" + System.lineSeparator()
+            + "1," + System.lineSeparator()
+            + "1," + System.lineSeparator()
+            + ",1" + System.lineSeparator()
+    )));
+    sameNames.prepareData();
+    Party party = sameNames.getPartyList().get(0);
+    assertEquals(3, party.getPartyVotes());
+    assertEquals(2, party.getCandidateList().get(0).getNumVotes());
+    assertEquals(1, party.getCandidateList().get(1).getNumVotes());
+  }
+
   @Test
   public void testGenerateParticipants() {
     assertEquals("Deutsch", opl.getPartyList().get(0).getCandidateList().get(0).getName());
@@ -93,20 +140,6 @@ public class OpenPartyListTest {
 
   }
 
-  @Test
-  public void testGetLargestRemainderVotes() {
-    ArrayList<Party> partyList = opl.getPartyList();
-    opl.setQuota(3);
-
-    // Initially, Party "R" has 3 votes. Party "D" has 5. Party "I" has 1.
-    opl.allocateSeats(partyList);
-    opl.checkRemainingSeats();
-
-    // After allocation. Party "R" has 0 votes. Party "D" has 2. Party "I" has 1.
-    Party winner = opl.getLargestRemainderVotes(partyList);
-    assertEquals("D", winner.getName());
-  }
-
   @Test
   public void testCoinTossPartyOne() {
     ArrayList<Party> parties = new ArrayList<>();
@@ -144,6 +177,154 @@ public class OpenPartyListTest {
     assertEquals(0, partyList.get(2).getPartySeats());
   }
 
+  @Test
+  public void testAllocateRemainingSeatsSkipsFullParties() {
+    ArrayList<Party> partyList = opl.getPartyList();
+    opl.setQuota(3);
+    // Party "I" has the most remaining votes, but its only candidate already has a seat
+    partyList.get(0).setPartyVotes(1);
+    partyList.get(1).setPartyVotes(2);
+    partyList.get(2).setPartyVotes(5);
+    partyList.get(2).setPartySeats(1);
+    opl.allocateRemainingSeats(partyList, 1);
+
+    assertEquals(0, partyList.get(0).getPartySeats());
+    assertEquals(1, partyList.get(1).getPartySeats());
+    assertEquals(1, partyList.get(2).getPartySeats());
+  }
+
+  @Test
+  public void testAllocateRemainingSeatsMany() {
+    ArrayList<Party> partyList = new ArrayList<>();
+    for (int i = 0; i < 2; i++) {
+      Party party = new Party("party" + i);
+      ArrayList<Candidate> candidates = new ArrayList<>();
+      for (int j = 0; j < 50000; j++) {
+        candidates.add(new Candidate("candidate" + j, party));
+      }
+      party.addCandidateList(candidates);
+      partyList.add(party);
+    }
+    opl.setQuota(1);
+
+    // more seats than both parties have candidates, so the last ones are left unfilled
+    opl.allocateRemainingSeats(partyList, 120000);
+    assertEquals(50000, partyList.get(0).getPartySeats());
+    assertEquals(50000, partyList.get(1).getPartySeats());
+  }
+
+  @Test
+  public void testAllocateDivisorSeatsDHondt() {
+    ArrayList<Party> partyList = divisorParties();
+    new OpenPartyList(new TextBallotReader(new BufferedReader(new StringReader(""))),
+        OpenPartyList.SeatMethod.DHONDT).allocateDivisorSeats(partyList, 8);
+
+    // quotients 100000, 80000, 50000, 40000, 33333, 30000, 26666, 25000
+    assertEquals(4, partyList.get(0).getPartySeats());
+    assertEquals(3, partyList.get(1).getPartySeats());
+    assertEquals(1, partyList.get(2).getPartySeats());
+    assertEquals(0, partyList.get(3).getPartySeats());
+  }
+
+  @Test
+  public void testAllocateDivisorSeatsSainteLague() {
+    ArrayList<Party> partyList = divisorParties();
+    new OpenPartyList(new TextBallotReader(new BufferedReader(new StringReader(""))),
+        OpenPartyList.SeatMethod.SAINTE_LAGUE).allocateDivisorSeats(partyList, 8);
+
+    // quotients 100000, 80000, 33333, 30000, 26666, 20000, 20000, 16000
+    assertEquals(3, partyList.get(0).getPartySeats());
+    assertEquals(3, partyList.get(1).getPartySeats());
+    assertEquals(1, partyList.get(2).getPartySeats());
+    assertEquals(1, partyList.get(3).getPartySeats());
+  }
+
+  @Test
+  public void testAllocateDivisorSeatsCapacity() {
+    ArrayList<Party> partyList = opl.getPartyList();
+    partyList.get(0).setPartyVotes(100);
+    partyList.get(1).setPartyVotes(10);
+    partyList.get(2).setPartyVotes(1);
+    // more seats than candidates, so every party fills up and one seat is left over
+    new OpenPartyList(new TextBallotReader(new BufferedReader(new StringReader(""))),
+        OpenPartyList.SeatMethod.DHONDT).allocateDivisorSeats(partyList, 7);
+
+    assertEquals(3, partyList.get(0).getPartySeats());
+    assertEquals(2, partyList.get(1).getPartySeats());
+    assertEquals(1, partyList.get(2).getPartySeats());
+  }
+
+  @Test
+  public void testRunElectionDHondt() {
+    OpenPartyList dhondt = new OpenPartyList(new TextBallotReader(new BufferedReader(
+        new StringReader("4" + System.lineSeparator()
+            + "[Pike,D],[Foster,D],[Deutsch,R],[Borg,R]" + System.lineSeparator()
+            + "3" + System.lineSeparator()
+            + "6" + System.lineSeparator()
+            + "1,,," + System.lineSeparator()
+            + "1,,," + System.lineSeparator()
+            + ",1,," + System.lineSeparator()
+            + ",1,," + System.lineSeparator()
+            + ",,1," + System.lineSeparator()
+            + ",,,1"))), OpenPartyList.SeatMethod.DHONDT);
+    // "D" has 4 votes and "R" has 2, so "D" wins the first and third seats
+    ArrayList<Candidate> elected = dhondt.runElection();
+    assertEquals(3, elected.size());
+    for (Party party : dhondt.getPartyList()) {
+      assertEquals(party.getName().equals("D") ? 2 : 1, party.getPartySeats());
+    }
+  }
+
+  @Test
+  public void testRunElectionCandidateTie() {
+    OpenPartyList tied = new OpenPartyList(new BufferedReader(new StringReader(
+        "3" + System.lineSeparator()
+            + "[Pike,D],[Foster,D],[Deutsch,D]" + System.lineSeparator()
+            + "2" + System.lineSeparator()
+            + "6" + System.lineSeparator()
+            + "1,," + System.lineSeparator()
+            + ",1," + System.lineSeparator()
+            + ",,1" + System.lineSeparator()
+            + "1,," + System.lineSeparator()
+            + ",1," + System.lineSeparator()
+            + ",,1")));
+    // "D" wins both seats, and all three candidates are tied for them
+    ArrayList<Candidate> elected = tied.runElection();
+    assertEquals(2, elected.size());
+    assertFalse(elected.contains(null));
+    assertTrue(elected.get(0) != elected.get(1));
+  }
+
+  @Test
+  public void testIsPartyList() {
+    assertTrue(OpenPartyList.isPartyList("OPL"));
+    assertTrue(OpenPartyList.isPartyList("DHONDT"));
+    assertTrue(OpenPartyList.isPartyList("SAINTELAGUE"));
+    assertFalse(OpenPartyList.isPartyList("IR"));
+  }
+
+  /**
+   * Makes four parties with the votes of a common divisor method example, and enough candidates
+   * for any number of seats they could win.
+   *
+   * @return the parties
+   */
+  private ArrayList<Party> divisorParties() {
+    int[] votes = {100000, 80000, 30000, 20000};
+    ArrayList<Party> partyList = new ArrayList<>();
+    for (int i = 0; i < votes.length; i++) {
+      Party party = new Party("party" + i);
+      ArrayList<Candidate> candidates = new ArrayList<>();
+      for (int j = 0; j < 8; j++) {
+        candidates.add(new Candidate("candidate" + j, party));
+      }
+      party.addCandidateList(candidates);
+      party.setPartyVotes(votes[i]);
+      partyList.add(party);
+    }
+    return partyList;
+  }
+
   @Test
   public void testGetPartyList() {
     assertEquals(3, opl.getPartyList().size());
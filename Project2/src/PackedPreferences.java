@@ -0,0 +1,111 @@
+import java.util.Arrays;
+
+/**
+ * A growable list of candidate indices packed into long words, using as few bits for each
+ * index as the number of candidates allows: 4 bits for up to 16 candidates, 8 bits for up to
+ * 256, 16 bits for up to 65536 and 32 bits otherwise. The ballot arena keeps the preference
+ * orders of its groups in one of these, so small elections need a fraction of the memory.
+ * PackedPreferences.java
+ */
+public final class PackedPreferences {
+  private final int bits;
+  private final long valueMask;
+  // log2 of the number of indices in a word, and the mask of an index's slot in its word
+  private final int wordShift;
+  private final int slotMask;
+  private long[] words;
+
+  /**
+   * Constructor for PackedPreferences.
+   *
+   * @param numCandidates number of candidates in the election
+   * @param capacity      number of indices the list can hold before it grows
+   */
+  public PackedPreferences(int numCandidates, int capacity) {
+    if (numCandidates <= 1 << 4) {
+      bits = 4;
+    } else if (numCandidates <= 1 << 8) {
+      bits = 8;
+    } else if (numCandidates <= 1 << 16) {
+      bits = 16;
+    } else {
+      bits = 32;
+    }
+    valueMask = (1L << bits) - 1;
+    wordShift = Integer.numberOfTrailingZeros(Long.SIZE / bits);
+    slotMask = (1 << wordShift) - 1;
+    words = new long[wordsFor(capacity)];
+  }
+
+  /**
+   * Gets the number of bits used for each candidate index.
+   *
+   * @return bits per index
+   */
+  public int getBitsPerCandidate() {
+    return bits;
+  }
+
+  /**
+   * Gets the number of indices the list can hold before it grows.
+   *
+   * @return capacity of the list
+   */
+  public int capacity() {
+    return words.length << wordShift;
+  }
+
+  /**
+   * Grows the list, if needed, so that it can hold at least the given number of indices.
+   * The list at least doubles each time it grows.
+   *
+   * @param capacity number of indices the list must be able to hold
+   */
+  public void ensureCapacity(int capacity) {
+    if (capacity > capacity()) {
+      words = Arrays.copyOf(words, Math.max(words.length * 2, wordsFor(capacity)));
+    }
+  }
+
+  /**
+   * Gets a candidate index from the list.
+   *
+   * @param index position in the list
+   * @return the candidate index at that position
+   */
+  public int get(int index) {
+    int shift = (index & slotMask) * bits;
+    return (int) ((words[index >>> wordShift] >>> shift) & valueMask);
+  }
+
+  /**
+   * Sets a candidate index in the list.
+   *
+   * @param index     position in the list
+   * @param candidate the candidate index to store there
+   */
+  public void set(int index, int candidate) {
+    int word = index >>> wordShift;
+    int shift = (index & slotMask) * bits;
+    words[word] = (words[word] & ~(valueMask << shift)) | ((candidate & valueMask) << shift);
+  }
+
+  /**
+   * Gets the number of bytes used by the words of the list.
+   *
+   * @return number of bytes
+   */
+  public long getStorageBytes() {
+    return (long) words.length * Long.BYTES;
+  }
+
+  /**
+   * Finds the number of words needed to hold a number of indices.
+   *
+   * @param capacity number of indices
+   * @return number of words
+   */
+  private int wordsFor(int capacity) {
+    return (int) (((long) capacity + slotMask) >>> wordShift);
+  }
+}
@@ -0,0 +1,63 @@
+import java.util.Random;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Tests the methods for the PackedPreferences class.
+ * PackedPreferencesTest.java
+ */
+public class PackedPreferencesTest {
+  @Test
+  public void testBitsPerCandidate() {
+    assertEquals(4, new PackedPreferences(4, 8).getBitsPerCandidate());
+    assertEquals(4, new PackedPreferences(16, 8).getBitsPerCandidate());
+    assertEquals(8, new PackedPreferences(17, 8).getBitsPerCandidate());
+    assertEquals(8, new PackedPreferences(256, 8).getBitsPerCandidate());
+    assertEquals(16, new PackedPreferences(257, 8).getBitsPerCandidate());
+    assertEquals(32, new PackedPreferences(70000, 8).getBitsPerCandidate());
+  }
+
+  @Test
+  public void testStorageBytes() {
+    // 64 nibbles fit in four words, where 64 ints would take 256 bytes
+    assertEquals(32, new PackedPreferences(16, 64).getStorageBytes());
+    assertEquals(64, new PackedPreferences(200, 64).getStorageBytes());
+  }
+
+  @Test
+  public void testGetSet() {
+    int[] sizes = {16, 256, 65536, 100000};
+    for (int numCandidates : sizes) {
+      PackedPreferences list = new PackedPreferences(numCandidates, 100);
+      int[] expected = new int[100];
+      Random random = new Random(numCandidates);
+      for (int i = 0; i < 100; i++) {
+        expected[i] = random.nextInt(numCandidates);
+        list.set(i, expected[i]);
+      }
+      // the largest index is stored without touching its neighbours
+      list.set(37, numCandidates - 1);
+      expected[37] = numCandidates - 1;
+      list.set(50, 0);
+      expected[50] = 0;
+      for (int i = 0; i < 100; i++) {
+        assertEquals(expected[i], list.get(i));
+      }
+    }
+  }
+
+  @Test
+  public void testEnsureCapacity() {
+    PackedPreferences list = new PackedPreferences(10, 3);
+    for (int i = 0; i < 1000; i++) {
+      list.ensureCapacity(i + 1);
+      list.set(i, i % 10);
+    }
+    assertTrue(list.capacity() >= 1000);
+    for (int i = 0; i < 1000; i++) {
+      assertEquals(i % 10, list.get(i));
+    }
+  }
+}
@@ -1,4 +1,7 @@
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.PriorityQueue;
 
 /**
  * Represents a party of candidates in an election.
@@ -81,28 +84,73 @@ public class Party {
 
   /**
    * This function get the top number of candidates with the highest votes.
+   * Candidates with the same votes are ranked in the order they are listed in the party.
+   * The party's candidate list is left unchanged.
    *
    * @param x number of candidates need to be chosen from the list.
    * @return list of the candidates with the most votes
    */
   public ArrayList<Candidate> getTopXCandidate(int x) {
+    return getTopXCandidate(x, null);
+  }
+
+  /**
+   * This function get the top number of candidates with the highest votes, and finds the candidates
+   * tied for the last of those places. The candidates are chosen with a heap holding at most x of
+   * them, so a party of n candidates is ranked in O(n log x) time.
+   *
+   * @param x    number of candidates need to be chosen from the list.
+   * @param ties filled, in list order, with every candidate having the same votes as the last
+   *             candidate chosen when some of them were not chosen; may be null
+   * @return list of the candidates with the most votes, from the most votes to the fewest
+   */
+  public ArrayList<Candidate> getTopXCandidate(int x, List<Candidate> ties) {
     if (x > candidateList.size()) {
-      return candidateList;
+      return new ArrayList<Candidate>(candidateList);
     }
     ArrayList<Candidate> topCandidates = new ArrayList<Candidate>();
-    ArrayList<Candidate> winningList = candidateList;
-    while (x > 0) {
-      int maxVotes = -1;
-      Candidate maxCandidate = new Candidate();
-      for (Candidate candidate : winningList) {
-        if (candidate.getNumVotes() > maxVotes) {
-          maxVotes = candidate.getNumVotes();
-          maxCandidate = candidate;
+    if (x <= 0) {
+      return topCandidates;
+    }
+
+    // the head of the heap is the weakest candidate chosen so far: the fewest votes, listed last
+    PriorityQueue<Integer> chosen = new PriorityQueue<>(x + 1, (a, b) -> {
+      int byVotes = Integer.compare(candidateList.get(a).getNumVotes(),
+          candidateList.get(b).getNumVotes());
+      return byVotes != 0 ? byVotes : Integer.compare(b, a);
+    });
+    for (int i = 0; i < candidateList.size(); i++) {
+      chosen.add(i);
+      if (chosen.size() > x) {
+        chosen.poll();
+      }
+    }
+    int lastVotes = candidateList.get(chosen.peek()).getNumVotes();
+    while (!chosen.isEmpty()) {
+      topCandidates.add(candidateList.get(chosen.poll()));
+    }
+    Collections.reverse(topCandidates);
+
+    if (ties != null) {
+      int numTied = 0;
+      for (Candidate candidate : candidateList) {
+        if (candidate.getNumVotes() == lastVotes) {
+          numTied++;
+        }
+      }
+      int numChosen = 0;
+      for (Candidate candidate : topCandidates) {
+        if (candidate.getNumVotes() == lastVotes) {
+          numChosen++;
+        }
+      }
+      if (numTied > numChosen) {
+        for (Candidate candidate : candidateList) {
+          if (candidate.getNumVotes() == lastVotes) {
+            ties.add(candidate);
+          }
         }
       }
-      topCandidates.add(maxCandidate);
-      winningList.remove(maxCandidate);
-      x--;
     }
     return topCandidates;
   }
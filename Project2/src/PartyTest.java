@@ -81,4 +81,33 @@ public class PartyTest {
     assertTrue(top.contains(cand2));
     assertTrue(top.contains(cand3));
   }
+
+  @Test
+  public void testGetTopXCandidateKeepsList() {
+    ArrayList<Candidate> top = party3.getTopXCandidate(3);
+    assertEquals(cand2, top.get(0));
+    assertEquals(cand3, top.get(1));
+    assertEquals(cand1, top.get(2));
+    assertEquals(3, party3.getCandidateList().size());
+    assertEquals(cand1, party3.getCandidateList().get(0));
+    assertEquals(0, party3.getTopXCandidate(0).size());
+  }
+
+  @Test
+  public void testGetTopXCandidateTies() {
+    Candidate cand4 = new Candidate("Tester4", 120);
+    candidateList.add(cand4);
+    ArrayList<Candidate> ties = new ArrayList<>();
+    ArrayList<Candidate> top = party3.getTopXCandidate(2, ties);
+    // Tester3 is listed before Tester4, so it is chosen, but the tie is still found
+    assertEquals(cand2, top.get(0));
+    assertEquals(cand3, top.get(1));
+    assertEquals(2, ties.size());
+    assertEquals(cand3, ties.get(0));
+    assertEquals(cand4, ties.get(1));
+
+    ties.clear();
+    party3.getTopXCandidate(3, ties);
+    assertTrue(ties.isEmpty());
+  }
 }
@@ -9,7 +9,7 @@ import java.util.ArrayList;
  * @author Thomas Haupert
  */
 public class PopularityOnly extends Election {
-  private BufferedReader file;
+  private BallotReader file;
   private ArrayList<Candidate> candidateList;
 
   /**
@@ -18,6 +18,15 @@ public class PopularityOnly extends Election {
    * @param file reader for the election file
    */
   public PopularityOnly(BufferedReader file) {
+    this(new TextBallotReader(file));
+  }
+
+  /**
+   * Constructor for popularity only election.
+   *
+   * @param file reader for the election file, positioned after the voting method
+   */
+  public PopularityOnly(BallotReader file) {
     this.file = file;
     this.candidateList = new ArrayList<>();
   }
@@ -34,29 +43,114 @@ public class PopularityOnly extends Election {
 
     // read line 3: candidates
     line = file.readLine();
-    String[] candidates = line.split(",");
-    for (int i = 0; i < candidates.length; i += 2) {
-      candidates[i] = candidates[i].replace("[", "");
-      candidates[i + 1] = candidates[i + 1].replace("]", "");
-      candidateList.add(new Candidate(candidates[i], new Party(candidates[i + 1])));
+    BallotTokenizer tokenizer = new BallotTokenizer();
+    tokenizer.reset(line);
+    while (tokenizer.nextField()) {
+      String name = tokenizer.fieldString();
+      if (!tokenizer.nextField()) {
+        throw new IOException("Candidate " + name + " has no party");
+      }
+      candidateList.add(new Candidate(name, new Party(tokenizer.fieldString())));
     }
 
     // read line 4: number of ballots
     line = file.readLine();
     int numBallots = Integer.parseInt(line);
     setTotalVotes(numBallots);
+
+    // read remaining lines: ballots. Each chunk is added to the totals as soon as it is counted.
+    int numCandidates = candidateList.size();
+    int[] votes = new int[numCandidates];
+    file.countBallotChunks(numBallots, numCandidates, () -> new VoteChunk(numCandidates),
+        chunk -> {
+          for (int i = 0; i < numCandidates; i++) {
+            votes[i] += chunk.getTally(i);
+          }
+        });
+    for (int i = 0; i < numCandidates; i++) {
+      Candidate candidate = candidateList.get(i);
+      candidate.setVotes(candidate.getNumVotes() + votes[i]);
+    }
+  }
+
+  /**
+   * Counts the ballots of one part of the election file by giving a vote to the candidate
+   * marked on each ballot.
+   */
+  private static final class VoteChunk extends BallotChunk {
+    /**
+     * Constructor for VoteChunk.
+     *
+     * @param numCandidates number of candidates in the election
+     */
+    VoteChunk(int numCandidates) {
+      super(numCandidates);
+    }
+
+    /**
+     * Counts a single ballot.
+     *
+     * @param ordinal position of the ballot in the file
+     * @param vote    value of each field of the ballot, 1 for the candidate voted for
+     */
+    @Override
+    public void countBallot(int ordinal, int[] vote) {
+      int candidateIndex = findMark(vote);
+      if (candidateIndex != -1) {
+        addToTally(candidateIndex);
+      }
+    }
   }
 
   /**
    * This function runs the algorithm which counts the votes and decides
-   * the winner(s).
+   * the winner(s). The candidate with the most votes wins; a tie for the most votes is
+   * decided by a coin toss.
    *
    * @return a list of Candidate objects
    * @custom.pre The file has been processed.
    * @custom.post The list of candidates with voting information
    */
   public ArrayList<Candidate> runElection() {
-    return new ArrayList<>();
+    appendAuditFile("Beginning Popularity Only election.");
+    appendFinalResult("Type of election: Popularity Only" + System.lineSeparator());
+    appendFinalResult("Votes for each candidate:");
+    ArrayList<Candidate> winners = new ArrayList<>();
+    ArrayList<Candidate> leaders = new ArrayList<>();
+    for (Candidate candidate : candidateList) {
+      appendAuditFile(String.format("Candidate \"%s\" has %d votes.",
+          candidate.getName(), candidate.getNumVotes()));
+      appendFinalResult(String.format("%s (%s): %d",
+          candidate.getName(), candidate.getParty().getName(), candidate.getNumVotes()));
+      if (!leaders.isEmpty() && candidate.getNumVotes() > leaders.get(0).getNumVotes()) {
+        leaders.clear();
+      }
+      if (leaders.isEmpty() || candidate.getNumVotes() == leaders.get(0).getNumVotes()) {
+        leaders.add(candidate);
+      }
+    }
+    appendFinalResult("");
+    if (leaders.isEmpty()) {
+      return winners;
+    }
+
+    Candidate winner = leaders.get(0);
+    if (leaders.size() > 1) {
+      appendAuditFile(String.format("%d candidates are tied for the most votes.", leaders.size()));
+      winner = coinToss(leaders);
+    }
+    appendAuditFile(
+        String.format("Candidate \"%s\" is the winner of the election with %d votes.",
+            winner.getName(), winner.getNumVotes())
+            + System.lineSeparator() + System.lineSeparator() + System.lineSeparator());
+    appendFinalResult(
+        String.format("Winner of election: %s (%s)",
+            winner.getName(), winner.getParty().getName()));
+    appendFinalResult(
+        String.format("Votes for winner: %d", winner.getNumVotes())
+            + System.lineSeparator() + System.lineSeparator() + System.lineSeparator());
+    winners.add(winner);
+    return winners;
   }
 
   /**
@@ -6,6 +6,7 @@ import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
 
 /**
  * Tests the methods for the PopularityOnly class.
@@ -74,6 +75,62 @@ public class PopularityOnlyTest {
     assertEquals("I", po.getCandidateList().get(5).getParty().getName());
   }
 
+  @Test
+  public void testPrepareDataVotes() {
+    int[] votes = {3, 2, 0, 2, 1, 1};
+    for (int i = 0; i < votes.length; i++) {
+      assertEquals(votes[i], po.getCandidateList().get(i).getNumVotes());
+    }
+  }
+
+  @Test
+  public void testPrepareDataLastMarkCounts() throws IOException {
+    po = new PopularityOnly(new BufferedReader(new StringReader(
+        "3" + System.lineSeparator()
+            + "[Pike,D],[Deutsch,R],[Smith,I]" + System.lineSeparator()
+            + "3" + System.lineSeparator()
+            + "1,1," + System.lineSeparator()
+            + "1,,1" + System.lineSeparator()
+            + ",," + System.lineSeparator())));
+    po.prepareData();
+    assertEquals(0, po.getCandidateList().get(0).getNumVotes());
+    assertEquals(1, po.getCandidateList().get(1).getNumVotes());
+    assertEquals(1, po.getCandidateList().get(2).getNumVotes());
+  }
+
+  @Test
+  public void testRunElectionWinner() {
+    ArrayList<Candidate> winners = po.runElection();
+    assertEquals(1, winners.size());
+    assertEquals("Pike", winners.get(0).getName());
+  }
+
+  @Test
+  public void testRunElectionTie() throws IOException {
+    po = new PopularityOnly(new BufferedReader(new StringReader(
+        "3" + System.lineSeparator()
+            + "[Pike,D],[Deutsch,R],[Smith,I]" + System.lineSeparator()
+            + "4" + System.lineSeparator()
+            + "1,," + System.lineSeparator()
+            + ",,1" + System.lineSeparator()
+            + ",1," + System.lineSeparator()
+            + ",,1")));
+    po.prepareData();
+    ArrayList<Candidate> winners = po.runElection();
+    assertEquals(1, winners.size());
+    assertEquals("Smith", winners.get(0).getName());
+
+    po = new PopularityOnly(new BufferedReader(new StringReader(
+        "3" + System.lineSeparator()
+            + "[Pike,D],[Deutsch,R],[Smith,I]" + System.lineSeparator()
+            + "2" + System.lineSeparator()
+            + "1,," + System.lineSeparator()
+            + ",,1")));
+    po.prepareData();
+    String winner = po.runElection().get(0).getName();
+    assertTrue(winner.equals("Pike") || winner.equals("Smith"));
+  }
+
   @Test
   public void testGetNumInvalidBallots() {
     assertEquals(0, po.getNumInvalidBallots());
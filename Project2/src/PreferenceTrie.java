@@ -0,0 +1,445 @@
+import java.util.Arrays;
+import java.util.BitSet;
+
+/**
+ * Stores the ranked ballots of an instant runoff election as a prefix trie of preference
+ * orders. Each node counts the ballots whose preferences start with the path to that node,
+ * so the children of the root are the candidates currently holding ballots.
+ * Eliminating a candidate merges each of that candidate's subtrees into its parent, so the cost
+ * of a round depends on the size of the trie and not on the number of ballots.
+ * PreferenceTrie.java
+ */
+public class PreferenceTrie extends BallotStore {
+  private static final int ROOT = 0;
+  private static final int DEAD = -2;
+  private static final int[] EMPTY = new int[0];
+
+  private final int numCandidates;
+  private int numBallots;
+  private int numNodes;
+  private int numLiveNodes;
+  private boolean compacted;
+
+  // per node: candidate, ballots passing through, ballots ending here
+  private int[] label;
+  private int[] count;
+  private int[] endCount;
+
+  // per node: tree links, children form a doubly linked list
+  private int[] parent;
+  private int[] firstChild;
+  private int[] nextSibling;
+  private int[] prevSibling;
+
+  // child of the root for each candidate, -1 if the candidate holds no ballots
+  private final int[] rootChild;
+
+  // nodes labelled with candidate c are labelNodes[c][0] to labelNodes[c][labelSize[c] - 1]
+  private final int[][] labelNodes;
+  private final int[] labelSize;
+
+  // scratch space used while parsing ballots and merging subtrees
+  private final int[] rankOrder;
+  private int[] mergeStack;
+
+  /**
+   * Constructor for PreferenceTrie.
+   *
+   * @param numCandidates   number of candidates in the election
+   * @param expectedBallots number of ballots the election file says it contains
+   */
+  public PreferenceTrie(int numCandidates, int expectedBallots) {
+    this.numCandidates = numCandidates;
+    int capacity = Math.max(Math.min(expectedBallots, 1024), 16);
+    this.label = new int[capacity];
+    this.count = new int[capacity];
+    this.endCount = new int[capacity];
+    this.parent = new int[capacity];
+    this.firstChild = new int[capacity];
+    this.nextSibling = new int[capacity];
+    this.prevSibling = new int[capacity];
+    this.rootChild = new int[numCandidates];
+    Arrays.fill(rootChild, -1);
+    this.labelNodes = new int[numCandidates][];
+    this.labelSize = new int[numCandidates];
+    // most candidates of a large field never label a node, so their lists stay empty
+    Arrays.fill(labelNodes, EMPTY);
+    this.rankOrder = new int[numCandidates];
+    this.mergeStack = new int[64];
+    newNode(-1, -1);
+  }
+
+  /**
+   * Adds a ballot to the trie by walking down its preference order, adding nodes as needed
+   * and counting the ballot at each node it passes.
+   * The preference order stops at the first rank that no candidate was given.
+   *
+   * @param rankedVote rank given to each candidate, 0 if the candidate was not ranked
+   * @return the index of the node the ballot ends at
+   * @throws IllegalStateException if the trie has been compacted
+   */
+  @Override
+  public int addBallot(int[] rankedVote) {
+    if (compacted) {
+      throw new IllegalStateException("Ballots cannot be added after the trie is compacted");
+    }
+    Arrays.fill(rankOrder, -1);
+    for (int i = 0; i < numCandidates; i++) {
+      int rank = rankedVote[i];
+      // when two candidates share a rank, the first one listed takes it; ranks out of range
+      // are left out of the order
+      if (rank > 0 && rank <= numCandidates && rankOrder[rank - 1] == -1) {
+        rankOrder[rank - 1] = i;
+      }
+    }
+    int length = 0;
+    while (length < numCandidates && rankOrder[length] != -1) {
+      length++;
+    }
+    return addOrder(length, 1);
+  }
+
+  /**
+   * Adds a group of ballots that all have the same preference order to the trie, counting
+   * all of them at each node of their path at once.
+   *
+   * @param order     array holding the preference order, as candidate indices
+   * @param start     position in the array of the first choice
+   * @param length number of candidates in the preference order
+   * @param weight number of ballots in the group
+   * @return the index of the node the ballots end at
+   * @throws IllegalStateException if the trie has been compacted
+   */
+  @Override
+  public int addGroup(int[] order, int start, int length, int weight) {
+    if (compacted) {
+      throw new IllegalStateException("Ballots cannot be added after the trie is compacted");
+    }
+    System.arraycopy(order, start, rankOrder, 0, length);
+    return addOrder(length, weight);
+  }
+
+  /**
+   * Adds ballots with the preference order held in the scratch space to the trie.
+   *
+   * @param length number of preferences in the scratch space
+   * @param weight number of ballots to add
+   * @return the index of the node the ballots end at
+   */
+  private int addOrder(int length, int weight) {
+    numBallots += weight;
+    int node = ROOT;
+    for (int i = 0; i < length; i++) {
+      int child = findChild(node, rankOrder[i]);
+      if (child == -1) {
+        child = newNode(rankOrder[i], node);
+      }
+      node = child;
+      count[node] += weight;
+    }
+    if (node == ROOT) {
+      // a ballot with no first choice is never held by anyone
+      return node;
+    }
+    endCount[node] += weight;
+    return node;
+  }
+
+  /**
+   * Gets the number of ballots stored in the trie.
+   *
+   * @return number of ballots
+   */
+  @Override
+  public int getNumBallots() {
+    return numBallots;
+  }
+
+  /**
+   * Gets the number of ballots currently held by a candidate.
+   *
+   * @param candidate index of the candidate
+   * @return number of ballots the candidate holds
+   */
+  @Override
+  public int countHeldBallots(int candidate) {
+    int node = rootChild[candidate];
+    return node == -1 ? 0 : count[node];
+  }
+
+  /**
+   * Eliminates a candidate by merging each node labelled with that candidate into its parent.
+   * For the node under the root, this moves the ballots to their next choices. For deeper
+   * nodes, it makes sure the candidate is skipped when those ballots move on later.
+   * The loser's list of nodes is released afterwards.
+   *
+   * @param loser      index of the eliminated candidate
+   * @param eliminated set of the indices of the eliminated candidates, including the loser
+   * @param received   filled with the number of ballots each candidate received
+   * @return number of ballots that had no next choice and were deleted
+   */
+  @Override
+  public int transferBallots(int loser, BitSet eliminated, int[] received) {
+    int exhausted = 0;
+    for (int i = 0; i < labelSize[loser]; i++) {
+      int node = labelNodes[loser][i];
+      if (label[node] == DEAD) {
+        continue;
+      }
+      int up = parent[node];
+      if (up == ROOT) {
+        exhausted += endCount[node];
+        for (int child = firstChild[node]; child != -1; child = nextSibling[child]) {
+          received[label[child]] += count[child];
+        }
+      } else {
+        endCount[up] += endCount[node];
+      }
+      unlink(node);
+      int child = firstChild[node];
+      firstChild[node] = -1;
+      while (child != -1) {
+        int next = nextSibling[child];
+        parent[child] = -1;
+        mergeInto(up, child);
+        child = next;
+      }
+      label[node] = DEAD;
+      numLiveNodes--;
+    }
+    labelNodes[loser] = EMPTY;
+    labelSize[loser] = 0;
+    return exhausted;
+  }
+
+  /**
+   * Moves a subtree that has been detached from its old parent under a new parent.
+   * If the parent already has a child with the same candidate, the two subtrees are merged
+   * node by node.
+   *
+   * @param target index of the new parent
+   * @param node   index of the root of the subtree to move
+   */
+  private void mergeInto(int target, int node) {
+    int top = 0;
+    mergeStack[top++] = target;
+    mergeStack[top++] = node;
+    while (top > 0) {
+      int moving = mergeStack[--top];
+      int into = mergeStack[--top];
+      int existing = findChild(into, label[moving]);
+      if (existing == -1) {
+        link(into, moving);
+        continue;
+      }
+      count[existing] += count[moving];
+      endCount[existing] += endCount[moving];
+      int child = firstChild[moving];
+      while (child != -1) {
+        int next = nextSibling[child];
+        if (top + 2 > mergeStack.length) {
+          mergeStack = Arrays.copyOf(mergeStack, mergeStack.length * 2);
+        }
+        parent[child] = -1;
+        mergeStack[top++] = existing;
+        mergeStack[top++] = child;
+        child = next;
+      }
+      firstChild[moving] = -1;
+      label[moving] = DEAD;
+      numLiveNodes--;
+    }
+  }
+
+  /**
+   * Finds the child of a node for a candidate.
+   *
+   * @param node      index of the node
+   * @param candidate index of the candidate
+   * @return index of the child node, -1 if there is none
+   */
+  private int findChild(int node, int candidate) {
+    if (node == ROOT) {
+      return rootChild[candidate];
+    }
+    for (int child = firstChild[node]; child != -1; child = nextSibling[child]) {
+      if (label[child] == candidate) {
+        return child;
+      }
+    }
+    return -1;
+  }
+
+  /**
+   * Adds a node to the front of a parent's list of children.
+   *
+   * @param up   index of the parent
+   * @param node index of the node
+   */
+  private void link(int up, int node) {
+    parent[node] = up;
+    prevSibling[node] = -1;
+    nextSibling[node] = firstChild[up];
+    if (firstChild[up] != -1) {
+      prevSibling[firstChild[up]] = node;
+    }
+    firstChild[up] = node;
+    if (up == ROOT) {
+      rootChild[label[node]] = node;
+    }
+  }
+
+  /**
+   * Removes a node from its parent's list of children.
+   *
+   * @param node index of the node
+   */
+  private void unlink(int node) {
+    int up = parent[node];
+    if (prevSibling[node] == -1) {
+      firstChild[up] = nextSibling[node];
+    } else {
+      nextSibling[prevSibling[node]] = nextSibling[node];
+    }
+    if (nextSibling[node] != -1) {
+      prevSibling[nextSibling[node]] = prevSibling[node];
+    }
+    if (up == ROOT) {
+      rootChild[label[node]] = -1;
+    }
+    parent[node] = -1;
+  }
+
+  /**
+   * Makes a new empty node and links it under its parent.
+   *
+   * @param candidate index of the candidate the node stands for, -1 for the root
+   * @param up        index of the parent, -1 for the root
+   * @return index of the new node
+   */
+  private int newNode(int candidate, int up) {
+    int node = numNodes;
+    if (node == label.length) {
+      int newCapacity = label.length * 2;
+      label = Arrays.copyOf(label, newCapacity);
+      count = Arrays.copyOf(count, newCapacity);
+      endCount = Arrays.copyOf(endCount, newCapacity);
+      parent = Arrays.copyOf(parent, newCapacity);
+      firstChild = Arrays.copyOf(firstChild, newCapacity);
+      nextSibling = Arrays.copyOf(nextSibling, newCapacity);
+      prevSibling = Arrays.copyOf(prevSibling, newCapacity);
+    }
+    numNodes++;
+    numLiveNodes++;
+    label[node] = candidate;
+    firstChild[node] = -1;
+    parent[node] = -1;
+    nextSibling[node] = -1;
+    prevSibling[node] = -1;
+    if (up != -1) {
+      link(up, node);
+      int[] nodes = labelNodes[candidate];
+      if (labelSize[candidate] == nodes.length) {
+        labelNodes[candidate] = Arrays.copyOf(nodes, Math.max(nodes.length * 2, 4));
+      }
+      labelNodes[candidate][labelSize[candidate]++] = node;
+    }
+    return node;
+  }
+
+  /**
+   * Gets the number of nodes in the trie, including the root and merged nodes.
+   *
+   * @return number of nodes
+   */
+  public int getNumNodes() {
+    return numNodes;
+  }
+
+  /**
+   * Gets the number of nodes still in the trie, including the root.
+   *
+   * @return number of live nodes
+   */
+  public int getNumLiveNodes() {
+    return numLiveNodes;
+  }
+
+  /**
+   * Rebuilds the node arrays with only the nodes still in the trie, once at least half of
+   * the nodes have been merged away. The live nodes are renumbered in breadth first order
+   * and keep the same children in the same order.
+   */
+  @Override
+  public void compact() {
+    if (numLiveNodes * 2 > numNodes) {
+      return;
+    }
+    int[] order = new int[numLiveNodes];
+    int[] newIndex = new int[numNodes];
+    Arrays.fill(newIndex, -1);
+    int size = 0;
+    order[size] = ROOT;
+    newIndex[ROOT] = size++;
+    for (int head = 0; head < size; head++) {
+      for (int child = firstChild[order[head]]; child != -1; child = nextSibling[child]) {
+        order[size] = child;
+        newIndex[child] = size++;
+      }
+    }
+
+    int capacity = Math.max(size, 16);
+    int[] newLabel = new int[capacity];
+    int[] newCount = new int[capacity];
+    int[] newEndCount = new int[capacity];
+    int[] newParent = new int[capacity];
+    int[] newFirstChild = new int[capacity];
+    int[] newNextSibling = new int[capacity];
+    int[] newPrevSibling = new int[capacity];
+    for (int i = 0; i < size; i++) {
+      int node = order[i];
+      newLabel[i] = label[node];
+      newCount[i] = count[node];
+      newEndCount[i] = endCount[node];
+      newParent[i] = parent[node] < 0 ? parent[node] : newIndex[parent[node]];
+      newFirstChild[i] = firstChild[node] == -1 ? -1 : newIndex[firstChild[node]];
+      newNextSibling[i] = nextSibling[node] == -1 ? -1 : newIndex[nextSibling[node]];
+      newPrevSibling[i] = prevSibling[node] == -1 ? -1 : newIndex[prevSibling[node]];
+    }
+    label = newLabel;
+    count = newCount;
+    endCount = newEndCount;
+    parent = newParent;
+    firstChild = newFirstChild;
+    nextSibling = newNextSibling;
+    prevSibling = newPrevSibling;
+
+    for (int c = 0; c < numCandidates; c++) {
+      if (rootChild[c] != -1) {
+        rootChild[c] = newIndex[rootChild[c]];
+      }
+      labelNodes[c] = new int[Math.min(labelSize[c], size)];
+      labelSize[c] = 0;
+    }
+    for (int i = 1; i < size; i++) {
+      labelNodes[label[i]][labelSize[label[i]]++] = i;
+    }
+    numNodes = size;
+    numLiveNodes = size;
+    compacted = true;
+  }
+
+  /**
+   * Gets the approximate number of bytes used by the arrays of the trie.
+   *
+   * @return number of bytes
+   */
+  @Override
+  public long getStorageBytes() {
+    long ints = 7L * label.length + rootChild.length + rankOrder.length + mergeStack.length;
+    for (int c = 0; c < numCandidates; c++) {
+      ints += labelNodes[c].length;
+    }
+    return ints * Integer.BYTES;
+  }
+}
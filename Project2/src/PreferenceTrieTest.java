@@ -0,0 +1,166 @@
+import java.util.BitSet;
+import java.util.Random;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Tests the methods for the PreferenceTrie class.
+ * PreferenceTrieTest.java
+ */
+public class PreferenceTrieTest {
+  private PreferenceTrie trie;
+
+  /**
+   * Set up a preference trie with four candidates for testing.
+   */
+  @BeforeEach
+  public void setUp() {
+    trie = new PreferenceTrie(4, 6);
+    trie.addBallot(new int[]{1, 3, 4, 2});
+    trie.addBallot(new int[]{1, 0, 2, 0});
+    trie.addBallot(new int[]{1, 2, 3, 0});
+    trie.addBallot(new int[]{3, 2, 1, 4});
+    trie.addBallot(new int[]{0, 0, 1, 2});
+    trie.addBallot(new int[]{0, 0, 0, 1});
+  }
+
+  @Test
+  public void testAddBallot() {
+    assertEquals(6, trie.getNumBallots());
+    assertEquals(3, trie.countHeldBallots(0));
+    assertEquals(0, trie.countHeldBallots(1));
+    assertEquals(2, trie.countHeldBallots(2));
+    assertEquals(1, trie.countHeldBallots(3));
+  }
+
+  @Test
+  public void testAddBallotSharesPrefixes() {
+    int end = trie.addBallot(new int[]{1, 0, 2, 0});
+    assertEquals(end, trie.addBallot(new int[]{1, 0, 2, 0}));
+    assertEquals(5, trie.countHeldBallots(0));
+  }
+
+  @Test
+  public void testAddBallotRankOutOfRange() {
+    int end = trie.addBallot(new int[]{1, 0, 2, 0});
+    assertEquals(end, trie.addBallot(new int[]{1, -1, 2, 0}));
+    assertEquals(end, trie.addBallot(new int[]{1, 0, 2, 7}));
+  }
+
+  @Test
+  public void testAddMarks() {
+    int end = trie.addBallot(new int[]{1, 0, 2, 0});
+    assertEquals(end, trie.addMarks(new int[]{0, 2}, new int[]{1, 2}, 2));
+    // Chou and Royce share rank 2, so Chou, listed first, takes it
+    assertEquals(end, trie.addMarks(new int[]{0, 2, 3}, new int[]{1, 2, 2}, 3));
+    assertEquals(9, trie.getNumBallots());
+  }
+
+  @Test
+  public void testTransferBallots() {
+    BitSet eliminated = new BitSet();
+    eliminated.set(2);
+    int[] received = new int[4];
+    assertEquals(0, trie.transferBallots(2, eliminated, received));
+    assertArrayEquals(new int[]{0, 1, 0, 1}, received);
+    assertEquals(0, trie.countHeldBallots(2));
+    assertEquals(1, trie.countHeldBallots(1));
+    assertEquals(2, trie.countHeldBallots(3));
+
+    // Rosen's ballots skip Chou, who is already eliminated
+    eliminated.set(0);
+    received = new int[4];
+    assertEquals(1, trie.transferBallots(0, eliminated, received));
+    assertArrayEquals(new int[]{0, 1, 0, 1}, received);
+  }
+
+  @Test
+  public void testCompact() {
+    BitSet eliminated = new BitSet();
+    eliminated.set(2);
+    trie.transferBallots(2, eliminated, new int[4]);
+    eliminated.set(0);
+    trie.transferBallots(0, eliminated, new int[4]);
+    int numNodes = trie.getNumNodes();
+    trie.compact();
+    assertEquals(trie.getNumLiveNodes(), trie.getNumNodes());
+    assertTrue(trie.getNumNodes() < numNodes);
+    assertEquals(2, trie.countHeldBallots(1));
+    assertEquals(3, trie.countHeldBallots(3));
+
+    // ballots still move correctly after the nodes are renumbered
+    eliminated.set(3);
+    int[] received = new int[4];
+    assertEquals(2, trie.transferBallots(3, eliminated, received));
+    assertArrayEquals(new int[]{0, 1, 0, 0}, received);
+    assertThrows(IllegalStateException.class, () -> trie.addBallot(new int[]{1, 2, 3, 4}));
+  }
+
+  @Test
+  public void testTransferBallotsMatchesArena() {
+    Random rand = new Random(18);
+    int numCandidates = 7;
+    for (int election = 0; election < 20; election++) {
+      PreferenceTrie trieStore = new PreferenceTrie(numCandidates, 300);
+      BallotArena arenaStore = new BallotArena(numCandidates, 300);
+      for (int b = 0; b < 300; b++) {
+        int[] rankedVote = randomBallot(rand, numCandidates);
+        trieStore.addBallot(rankedVote);
+        arenaStore.addBallot(rankedVote);
+      }
+      for (int c = 0; c < numCandidates; c++) {
+        assertEquals(arenaStore.countHeldBallots(c), trieStore.countHeldBallots(c));
+      }
+
+      BitSet eliminated = new BitSet();
+      for (int round = 0; round < numCandidates - 1; round++) {
+        int loser = rand.nextInt(numCandidates);
+        while (eliminated.get(loser)) {
+          loser = (loser + 1) % numCandidates;
+        }
+        eliminated.set(loser);
+        int[] trieReceived = new int[numCandidates];
+        int[] arenaReceived = new int[numCandidates];
+        assertEquals(arenaStore.transferBallots(loser, eliminated, arenaReceived),
+            trieStore.transferBallots(loser, eliminated, trieReceived));
+        assertArrayEquals(arenaReceived, trieReceived);
+        arenaStore.compact();
+        trieStore.compact();
+      }
+    }
+  }
+
+  /**
+   * Makes a random ranked vote, sometimes with a missing rank.
+   *
+   * @param rand          random number generator
+   * @param numCandidates number of candidates in the election
+   * @return rank given to each candidate, 0 if the candidate was not ranked
+   */
+  private int[] randomBallot(Random rand, int numCandidates) {
+    int[] order = new int[numCandidates];
+    for (int i = 0; i < numCandidates; i++) {
+      order[i] = i;
+    }
+    for (int i = numCandidates - 1; i > 0; i--) {
+      int j = rand.nextInt(i + 1);
+      int swap = order[i];
+      order[i] = order[j];
+      order[j] = swap;
+    }
+    int[] rankedVote = new int[numCandidates];
+    int numRanked = 1 + rand.nextInt(numCandidates);
+    for (int rank = 1; rank <= numRanked; rank++) {
+      rankedVote[order[rank - 1]] = rank;
+    }
+    if (numRanked > 2 && rand.nextInt(10) == 0) {
+      rankedVote[order[1]] = 0;
+    }
+    return rankedVote;
+  }
+}
@@ -1,4 +1,6 @@
 import java.io.*;
+import java.util.Arrays;
+import java.util.List;
 import org.junit.jupiter.api.AfterEach;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
@@ -330,6 +332,19 @@ public class SystemTest {
     assertEquals("Number of ballots cast: 7", splitString[40]);
   }
 
+  @Test
+  public void testIR_malformed() {
+    String[] files = new String[]{
+        "IR_malformed.csv",
+        "IR_given.csv"
+    };
+    List<String> lines = Arrays.asList(testMultipleElection(files));
+    // the malformed file is skipped without stopping the elections after it
+    assertTrue(lines.contains("The election could not be run."));
+    assertTrue(lines.contains("Winner(s) of election: Rosen (D)"));
+    assertEquals(1, lines.stream().filter(line -> line.startsWith("Winner(s)")).count());
+  }
+
   @Test
   public void testIR_invalidballots() {
     String[] splitString = testElection("IR_invalidballots.csv", false);
@@ -338,6 +353,24 @@ public class SystemTest {
     assertEquals("Number of valid ballots: 1", splitString[11]);
   }
   
+  @Test
+  public void testDHONDT_given() {
+    String[] splitString = testElection("DHONDT_given.csv", true);
+
+    assertEquals("Voting Method: Open Party List (D'Hondt)", splitString[5]);
+    assertEquals("Winner(s) of election: A1 (A), A2 (A), A3 (A), B1 (B), B2 (B)", splitString[8]);
+    assertEquals("Number of ballots cast: 23", splitString[10]);
+  }
+
+  @Test
+  public void testSAINTELAGUE_given() {
+    String[] splitString = testElection("SAINTELAGUE_given.csv", true);
+
+    assertEquals("Voting Method: Open Party List (Sainte-Lague)", splitString[5]);
+    assertEquals("Winner(s) of election: A1 (A), A2 (A), B1 (B), B2 (B), C1 (C)", splitString[8]);
+    assertEquals("Number of ballots cast: 23", splitString[10]);
+  }
+
   @Test
   public void testPO_given() {
     String[] splitString = testElection("PO_given.csv", true);
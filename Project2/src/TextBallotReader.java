@@ -0,0 +1,107 @@
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.nio.CharBuffer;
+
+/**
+ * Reads an election file from a BufferedReader. The characters are read into a buffer that is
+ * reused for every line, and the fields of each ballot are found in the buffer with a
+ * BallotTokenizer, so reading a ballot does not make any strings.
+ * TextBallotReader.java
+ */
+public class TextBallotReader extends BallotReader {
+  private static final int BUFFER_SIZE = 8192;
+
+  private final BufferedReader file;
+  private final BallotTokenizer tokenizer;
+  private char[] buffer;
+  private CharBuffer view;
+  private int position;
+  private int limit;
+  private boolean endOfFile;
+
+  /**
+   * Constructor for TextBallotReader.
+   *
+   * @param file reader for the election file
+   */
+  public TextBallotReader(BufferedReader file) {
+    this.file = file;
+    this.tokenizer = new BallotTokenizer();
+    this.buffer = new char[BUFFER_SIZE];
+    this.view = CharBuffer.wrap(buffer);
+  }
+
+  @Override
+  public String readLine() throws IOException {
+    int end = findLineEnd();
+    if (end == -1) {
+      return null;
+    }
+    int lineEnd = end;
+    if (lineEnd > position && buffer[lineEnd - 1] == '\r') {
+      lineEnd--;
+    }
+    String line = new String(buffer, position, lineEnd - position);
+    position = end + 1;
+    return line;
+  }
+
+  @Override
+  protected boolean nextBallot(int[] fields, int ordinal) throws IOException {
+    int end = findLineEnd();
+    if (end == -1) {
+      return false;
+    }
+    tokenizer.reset(view, position, end);
+    tokenizer.readFields(fields, ordinal);
+    position = end + 1;
+    return true;
+  }
+
+  /**
+   * Finds the end of the line starting at the current position, reading more of the file into
+   * the buffer if the line runs past the end of it.
+   *
+   * @return position in the buffer of the newline ending the line, or of the end of the file
+   *     if the last line has no newline; -1 if there are no more lines
+   * @throws IOException if the file cannot be read
+   */
+  private int findLineEnd() throws IOException {
+    int scanned = position;
+    while (true) {
+      while (scanned < limit) {
+        if (buffer[scanned] == '\n') {
+          return scanned;
+        }
+        scanned++;
+      }
+      if (endOfFile) {
+        return position < limit ? limit : -1;
+      }
+      // move the start of the line to the front of the buffer, growing it for long lines
+      int length = limit - position;
+      if (length == buffer.length) {
+        char[] larger = new char[buffer.length * 2];
+        System.arraycopy(buffer, position, larger, 0, length);
+        buffer = larger;
+        view = CharBuffer.wrap(buffer);
+      } else {
+        System.arraycopy(buffer, position, buffer, 0, length);
+      }
+      scanned -= position;
+      position = 0;
+      limit = length;
+      int read = file.read(buffer, limit, buffer.length - limit);
+      if (read == -1) {
+        endOfFile = true;
+      } else {
+        limit += read;
+      }
+    }
+  }
+
+  @Override
+  public void close() throws IOException {
+    file.close();
+  }
+}
@@ -0,0 +1,87 @@
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.StringReader;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+/**
+ * Tests the methods for the TextBallotReader class.
+ * TextBallotReaderTest.java
+ */
+public class TextBallotReaderTest {
+  private TextBallotReader reader;
+
+  /**
+   * Set up a reader over a short instant runoff file for testing.
+   */
+  @BeforeEach
+  public void setUp() {
+    reader = new TextBallotReader(new BufferedReader(new StringReader(
+        "IR" + System.lineSeparator()
+            + "3" + System.lineSeparator()
+            + "1,3,2" + System.lineSeparator()
+            + ",1," + System.lineSeparator()
+            + "12,,"
+    )));
+  }
+
+  @Test
+  public void testReadLine() throws IOException {
+    assertEquals("IR", reader.readLine());
+    assertEquals("3", reader.readLine());
+  }
+
+  @Test
+  public void testReadBallots() throws IOException {
+    reader.readLine();
+    reader.readLine();
+    int[][] read = new int[3][];
+    int[] ordinals = new int[3];
+    int count = reader.readBallots(10, 3, (ordinal, fields) -> {
+      read[ordinal] = fields.clone();
+      ordinals[ordinal] = ordinal;
+    });
+    assertEquals(3, count);
+    assertArrayEquals(new int[]{1, 3, 2}, read[0]);
+    assertArrayEquals(new int[]{0, 1, 0}, read[1]);
+    assertArrayEquals(new int[]{12, 0, 0}, read[2]);
+    assertArrayEquals(new int[]{0, 1, 2}, ordinals);
+    assertNull(reader.readLine());
+  }
+
+  @Test
+  public void testReadBallotsStopsAtMax() throws IOException {
+    reader.readLine();
+    reader.readLine();
+    assertEquals(2, reader.readBallots(2, 3, (ordinal, fields) -> { }));
+    assertEquals("12,,", reader.readLine());
+  }
+
+  @Test
+  public void testReadBallotsBadField() {
+    // the first line is the voting method, which is not a ballot
+    assertThrows(IOException.class, () -> reader.readBallots(10, 3, (ordinal, fields) -> { }));
+  }
+
+  @Test
+  public void testReadBallotsLongLine() throws IOException {
+    StringBuilder line = new StringBuilder("1");
+    for (int i = 2; i <= 3000; i++) {
+      line.append(',').append(i);
+    }
+    TextBallotReader longReader = new TextBallotReader(new BufferedReader(new StringReader(
+        "IR\r\n" + line + "\r\n" + line)));
+    assertEquals("IR", longReader.readLine());
+    int[] last = new int[2];
+    assertEquals(2, longReader.readBallots(10, 3000, (ordinal, fields) -> {
+      last[ordinal] = fields[2999];
+    }));
+    assertArrayEquals(new int[]{3000, 3000}, last);
+    assertNull(longReader.readLine());
+  }
+}